@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2021 Valentino Picotti
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+package joliex.slicer;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Scaling benchmark of the whole slicing pipeline: for each number of services it generates an
+ * application with {@link MonolithGenerator}, runs the launcher with --slice on it and appends to a CSV
+ * file the shape of the application, the wall time and the peak resident set size of the launcher.
+ *
+ * The peak RSS is the largest VmHWM in /proc of the launcher process and of its descendants, sampled
+ * while it runs: it is only available on Linux and left empty elsewhere.
+ *
+ * Usage: MacroBenchmark [--command "jolieslicer"] [--sizes 10,100,1000] [--repetitions 3]
+ * [--csv slicer-scaling.csv] [shape options of MonolithGenerator, except --services]
+ */
+public final class MacroBenchmark {
+	private static final long SAMPLING_MILLIS = 20;
+
+	public static void main( String[] args ) throws Exception {
+		List< String > command = List.of( "jolieslicer" );
+		int[] sizes = { 10, 100, 1000 };
+		int repetitions = 3;
+		Path csv = Path.of( "slicer-scaling.csv" );
+		MonolithGenerator generator = new MonolithGenerator();
+		for( int i = 0; i < args.length; i++ ) {
+			String option = args[ i ];
+			String value = args[ ++i ];
+			switch( option ) {
+			case "--command":
+				command = Arrays.asList( value.trim().split( "\\s+" ) );
+				break;
+			case "--sizes":
+				sizes = Arrays.stream( value.split( "," ) ).mapToInt( Integer::parseInt ).toArray();
+				break;
+			case "--repetitions":
+				repetitions = Integer.parseInt( value );
+				break;
+			case "--csv":
+				csv = Path.of( value );
+				break;
+			default:
+				if( "--services".equals( option ) || !generator.set( option, value ) ) {
+					throw new IllegalArgumentException( "Invalid argument: " + option );
+				}
+			}
+		}
+
+		boolean header = !Files.exists( csv );
+		try( PrintWriter out = new PrintWriter( Files.newBufferedWriter( csv, StandardCharsets.UTF_8,
+			StandardOpenOption.CREATE, StandardOpenOption.APPEND ) ) ) {
+			if( header ) {
+				out.println( "services,ports,types,depth,imports,embeds,declarations,repetition,wallMillis,"
+					+ "peakRssKiB,exitCode" );
+			}
+			for( int size : sizes ) {
+				generator.set( "--services", Integer.toString( size ) );
+				Path directory = Files.createTempDirectory( "jolieslicer-macro" );
+				try {
+					generator.generate( directory );
+					for( int r = 0; r < repetitions; r++ ) {
+						deleteRecursively( directory.resolve( "output" ) );
+						Run run = run( command, directory );
+						out.printf( "%d,%d,%d,%d,%d,%d,%d,%d,%d,%s,%d%n",
+							generator.services, generator.ports, generator.types, generator.depth,
+							generator.imports, generator.embeds, generator.declarations(), r,
+							run.wallMillis, run.peakRssKiB < 0 ? "" : Long.toString( run.peakRssKiB ),
+							run.exitCode );
+						out.flush();
+						System.out.printf( "services=%d repetition=%d: %d ms, peak RSS %d KiB, exit code %d%n",
+							size, r, run.wallMillis, run.peakRssKiB, run.exitCode );
+					}
+				} finally {
+					deleteRecursively( directory );
+				}
+			}
+		}
+	}
+
+	private static final class Run {
+		private long wallMillis;
+		private long peakRssKiB = -1;
+		private int exitCode;
+	}
+
+	private static Run run( List< String > command, Path directory ) throws IOException, InterruptedException {
+		List< String > commandLine = new ArrayList<>( command );
+		commandLine.addAll( List.of( MonolithGenerator.APPLICATION_FILE, MonolithGenerator.CONFIGURATION_FILE,
+			"--slice", "output" ) );
+		Run run = new Run();
+		long start = System.nanoTime();
+		Process process = new ProcessBuilder( commandLine )
+			.directory( directory.toFile() )
+			.redirectErrorStream( true )
+			.redirectOutput( ProcessBuilder.Redirect.DISCARD )
+			.start();
+		while( !process.waitFor( SAMPLING_MILLIS, TimeUnit.MILLISECONDS ) ) {
+			run.peakRssKiB = Math.max( run.peakRssKiB, residentSetHighWaterMark( process.toHandle() ) );
+		}
+		run.wallMillis = (System.nanoTime() - start) / 1_000_000;
+		run.exitCode = process.exitValue();
+		return run;
+	}
+
+	/**
+	 * Returns the largest VmHWM, in KiB, of process and of its live descendants, or -1 if unknown.
+	 */
+	private static long residentSetHighWaterMark( ProcessHandle process ) {
+		return Stream.concat( Stream.of( process ), process.descendants() )
+			.mapToLong( p -> {
+				try( Stream< String > lines = Files.lines( Path.of( "/proc", Long.toString( p.pid() ), "status" ) ) ) {
+					return lines.filter( l -> l.startsWith( "VmHWM:" ) )
+						.mapToLong( l -> Long.parseLong( l.replaceAll( "[^0-9]", "" ) ) )
+						.findFirst()
+						.orElse( -1 );
+				} catch( IOException | RuntimeException e ) {
+					return -1;
+				}
+			} )
+			.max()
+			.orElse( -1 );
+	}
+
+	private static void deleteRecursively( Path directory ) throws IOException {
+		if( !Files.exists( directory ) ) {
+			return;
+		}
+		try( Stream< Path > paths = Files.walk( directory ) ) {
+			for( Path p : paths.sorted( Comparator.reverseOrder() ).toList() ) {
+				Files.deleteIfExists( p );
+			}
+		}
+	}
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2021 Valentino Picotti
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+package joliex.slicer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Generates a sliceable monolith, application.ol, with its configuration.json and the local modules it
+ * imports. The shape of the application is configurable:
+ *
+ * - services: the services to slice, each one with its own interface;
+ * - ports: the input ports of each service (the first one internal, the others external);
+ * - types: the types shared by the interfaces of the services;
+ * - depth: the nesting depth of the inline types;
+ * - imports: the local modules, each declaring a type used by the shared types;
+ * - embeds: the helper services embedded by the services (not part of the configuration).
+ *
+ * Usage: MonolithGenerator output_dir [--services n] [--ports n] [--types n] [--depth n] [--imports n]
+ * [--embeds n]
+ */
+public final class MonolithGenerator {
+	public static final String APPLICATION_FILE = "application.ol";
+	public static final String CONFIGURATION_FILE = "configuration.json";
+
+	int services = 10;
+	int ports = 2;
+	int types = 20;
+	int depth = 2;
+	int imports = 2;
+	int embeds = 2;
+
+	public static void main( String[] args ) throws IOException {
+		if( args.length == 0 ) {
+			System.err.println( "usage: MonolithGenerator output_dir [--services n] [--ports n] [--types n]"
+				+ " [--depth n] [--imports n] [--embeds n]" );
+			System.exit( 1 );
+		}
+		MonolithGenerator generator = new MonolithGenerator();
+		for( int i = 1; i < args.length; i++ ) {
+			if( !generator.set( args[ i ], args[ ++i ] ) ) {
+				throw new IllegalArgumentException( "Invalid argument: " + args[ i - 1 ] );
+			}
+		}
+		generator.generate( Path.of( args[ 0 ] ) );
+	}
+
+	/**
+	 * Sets the shape parameter named by option (e.g. --services) to value. Returns false if there is no
+	 * such parameter.
+	 */
+	boolean set( String option, String value ) {
+		int n = Integer.parseInt( value );
+		switch( option ) {
+		case "--services":
+			services = Math.max( 1, n );
+			return true;
+		case "--ports":
+			ports = Math.max( 1, n );
+			return true;
+		case "--types":
+			types = Math.max( 1, n );
+			return true;
+		case "--depth":
+			depth = Math.max( 0, n );
+			return true;
+		case "--imports":
+			imports = Math.max( 0, n );
+			return true;
+		case "--embeds":
+			embeds = Math.max( 0, n );
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Returns the number of top level declarations of the generated application (imports included).
+	 */
+	int declarations() {
+		return imports + types + 2 * embeds + 2 * services;
+	}
+
+	void generate( Path directory ) throws IOException {
+		Files.createDirectories( directory );
+		for( int m = 0; m < imports; m++ ) {
+			Files.writeString( directory.resolve( "module" + m + ".ol" ), module( m ), StandardCharsets.UTF_8 );
+		}
+		Files.writeString( directory.resolve( APPLICATION_FILE ), application(), StandardCharsets.UTF_8 );
+		Files.writeString( directory.resolve( CONFIGURATION_FILE ), configuration(), StandardCharsets.UTF_8 );
+	}
+
+	private static String module( int m ) {
+		return "type M" + m + ": void {\n  id: int\n  payload?: string\n}\n";
+	}
+
+	String application() {
+		StringBuilder b = new StringBuilder();
+		for( int m = 0; m < imports; m++ ) {
+			b.append( "from .module" ).append( m ).append( " import M" ).append( m ).append( '\n' );
+		}
+		b.append( '\n' );
+		for( int t = 0; t < types; t++ ) {
+			b.append( "type T" ).append( t ).append( ": void {\n" )
+				.append( "  id: int\n" );
+			if( t > 0 ) {
+				b.append( "  previous?: T" ).append( t - 1 ).append( '\n' );
+			}
+			if( imports > 0 ) {
+				b.append( "  external?: M" ).append( t % imports ).append( '\n' );
+			}
+			nested( b, 1 );
+			b.append( "}\n\n" );
+		}
+		for( int e = 0; e < embeds; e++ ) {
+			b.append( "interface HelperInterface" ).append( e ).append( " {\n" )
+				.append( "RequestResponse:\n" )
+				.append( "  help" ).append( e ).append( "( T" ).append( e % types ).append( " )( void )\n" )
+				.append( "}\n\n" )
+				.append( "service Helper" ).append( e ).append( " {\n" )
+				.append( "  inputPort Ip {\n" )
+				.append( "    location: \"local\"\n" )
+				.append( "    interfaces: HelperInterface" ).append( e ).append( '\n' )
+				.append( "  }\n\n" )
+				.append( "  main {\n" )
+				.append( "    help" ).append( e ).append( "( request )() { nullProcess }\n" )
+				.append( "  }\n" )
+				.append( "}\n\n" );
+		}
+		for( int s = 0; s < services; s++ ) {
+			b.append( "interface Interface" ).append( s ).append( " {\n" )
+				.append( "RequestResponse:\n" )
+				.append( "  get" ).append( s ).append( "( T" ).append( s % types )
+				.append( " )( T" ).append( (s * 7 + 3) % types ).append( " ),\n" )
+				.append( "  put" ).append( s ).append( "( T" ).append( (s * 13 + 5) % types ).append( " )( void )\n" )
+				.append( "}\n\n" );
+		}
+		for( int s = 0; s < services; s++ ) {
+			int next = (s + 1) % services;
+			b.append( "service Service" ).append( s ).append( "( config: undefined ) {\n" )
+				.append( "  execution: concurrent\n\n" );
+			for( int p = 0; p < ports; p++ ) {
+				b.append( "  inputPort Ip" ).append( p ).append( " {\n" )
+					.append( "    location: config.Service" ).append( s ).append( ".locations[" ).append( p ).append( "]\n" )
+					.append( "    protocol: sodep\n" )
+					.append( "    interfaces: Interface" ).append( s ).append( '\n' )
+					.append( "  }\n\n" );
+			}
+			b.append( "  outputPort Next {\n" )
+				.append( "    location: config.Service" ).append( next ).append( ".locations[0]\n" )
+				.append( "    protocol: sodep\n" )
+				.append( "    interfaces: Interface" ).append( next ).append( '\n' )
+				.append( "  }\n\n" );
+			if( embeds > 0 ) {
+				b.append( "  embed Helper" ).append( s % embeds ).append( " as Helper\n\n" );
+			}
+			b.append( "  main {\n" )
+				.append( "    [ get" ).append( s ).append( "( request )( response ) { nullProcess } ]\n" )
+				.append( "    [ put" ).append( s ).append( "( request )() { nullProcess } ]\n" )
+				.append( "  }\n" )
+				.append( "}\n\n" );
+		}
+		return b.toString();
+	}
+
+	private void nested( StringBuilder b, int level ) {
+		if( level > depth ) {
+			return;
+		}
+		String indentation = "  ".repeat( level );
+		b.append( indentation ).append( "level" ).append( level ).append( "?: void {\n" )
+			.append( indentation ).append( "  value: string\n" );
+		nested( b, level + 1 );
+		b.append( indentation ).append( "}\n" );
+	}
+
+	String configuration() {
+		StringBuilder b = new StringBuilder( "{\n" );
+		for( int s = 0; s < services; s++ ) {
+			b.append( "  \"Service" ).append( s ).append( "\": {\n" )
+				.append( "    \"params\": {},\n" )
+				.append( "    \"ports\": [ \"internal\"" );
+			for( int p = 1; p < ports; p++ ) {
+				// External ports only need to be valid, not unique, for slicing
+				b.append( ", " ).append( 20000 + (s * ports + p) % 40000 );
+			}
+			b.append( " ]\n  }" ).append( s < services - 1 ? "," : "" ).append( '\n' );
+		}
+		return b.append( "}\n" ).toString();
+	}
+}
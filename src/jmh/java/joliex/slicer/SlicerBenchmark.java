@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2021 Valentino Picotti
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+package joliex.slicer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import jolie.lang.parse.ast.Program;
+import jolie.lang.parse.ast.ServiceNode;
+
+/**
+ * Benchmarks of the stages of slicing on synthetic programs (see {@link SyntheticProgram}): dependency
+ * resolution, the closure pass over the dependency graph, the lookup of the dependencies of every
+ * service, pretty printing of the built slices and end-to-end slicing. Run them
+ * with the benchmark profile, which also enables the GC profiler to report allocation rates:
+ *
+ * mvn -P benchmark test-compile exec:exec
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class SlicerBenchmark {
+
+	@State( Scope.Benchmark )
+	public static class ProgramState {
+		@Param( { "10", "100", "1000", "10000" } )
+		public int declarations;
+
+		Program program;
+		ProgramView view;
+		DependenciesResolver resolver;
+		List< ServiceNode > services;
+		Set< String > serviceNames;
+		/* The slices of all the services, built once so that print measures printing alone */
+		Map< String, Program > slices;
+
+		@Setup( Level.Trial )
+		public void setup() throws Exception {
+			program = SyntheticProgram.parse( declarations, 42 );
+			view = new ProgramView( program );
+			resolver = new DependenciesResolver( view );
+			services = program.children().stream()
+				.filter( ServiceNode.class::isInstance )
+				.map( ServiceNode.class::cast )
+				.collect( Collectors.toList() );
+			serviceNames = services.stream().map( ServiceNode::name ).collect( Collectors.toSet() );
+			slices = Slicer.create( program, Path.of( "." ), serviceNames ).getSlices();
+		}
+	}
+
+	@State( Scope.Thread )
+	public static class OutputState {
+		Path outputDirectory;
+
+		@Setup( Level.Trial )
+		public void setup() throws IOException {
+			outputDirectory = Files.createTempDirectory( "jolieslicer-benchmark" );
+		}
+
+		@Setup( Level.Invocation )
+		public void forgetPreviousRun() throws IOException {
+			// Without the manifest every file is written again, as in a cold run
+			Files.deleteIfExists( outputDirectory.resolve( ArtifactWriter.MANIFEST_FILE ) );
+		}
+
+		@TearDown( Level.Trial )
+		public void tearDown() throws IOException {
+			try( Stream< Path > paths = Files.walk( outputDirectory ) ) {
+				for( Path p : paths.sorted( Comparator.reverseOrder() ).toList() ) {
+					Files.deleteIfExists( p );
+				}
+			}
+		}
+	}
+
+	/**
+	 * Number of printed bytes, reported by JMH as a rate (bytes per second). Synthetic programs are ASCII,
+	 * so characters and UTF-8 bytes coincide.
+	 */
+	@AuxCounters( AuxCounters.Type.OPERATIONS )
+	@State( Scope.Thread )
+	public static class PrintedBytes {
+		public long bytes;
+
+		@Setup( Level.Iteration )
+		public void reset() {
+			bytes = 0;
+		}
+	}
+
+	@Benchmark
+	public DependenciesResolver resolve( ProgramState state ) {
+		return new DependenciesResolver( state.view );
+	}
+
+	/**
+	 * The closure pass of resolution alone: strongly connected components and their closures, over the
+	 * edges already collected.
+	 */
+	@Benchmark
+	public DependenciesResolver closures( ProgramState state ) {
+		state.resolver.computeClosures();
+		return state.resolver;
+	}
+
+	/**
+	 * The lookup of the precomputed closure of every service and its conversion to a set of nodes.
+	 */
+	@Benchmark
+	public void serviceDependencies( ProgramState state, Blackhole blackhole ) {
+		for( ServiceNode s : state.services ) {
+			blackhole.consume( state.resolver.getServiceDependencies( s ) );
+		}
+	}
+
+	@Benchmark
+	@BenchmarkMode( Mode.Throughput )
+	@OutputTimeUnit( TimeUnit.SECONDS )
+	public void print( ProgramState state, PrintedBytes printed, Blackhole blackhole ) {
+		for( Program slice : state.slices.values() ) {
+			JoliePrettyPrinter printer = new JoliePrettyPrinter( new StringBuilder( 4096 ), null, state.view );
+			printer.visit( slice );
+			String text = printer.toString();
+			printed.bytes += text.length();
+			blackhole.consume( text );
+		}
+	}
+
+	@Benchmark
+	public Slicer slice( ProgramState state, OutputState output ) throws Exception {
+		Slicer slicer = Slicer.create( state.program, output.outputDirectory, state.serviceNames );
+		slicer.generateServiceDirectories();
+		return slicer;
+	}
+}
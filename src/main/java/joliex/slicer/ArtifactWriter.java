@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2021 Valentino Picotti
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+package joliex.slicer;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+
+/**
+ * Writes the generated artifacts of an output directory, skipping the files whose content did not change
+ * since the previous run. The SHA-256 of every artifact is recorded in a manifest file in the output
+ * directory: a file is replaced only if its new hash differs from the recorded one (or if the file is
+ * missing or has a different size), so unchanged files keep their modification time.
+ *
+ * Content is streamed to a temporary file while being hashed, and moved over the target only when it
+ * changed. Concurrent writes of different files are safe.
+ */
+class ArtifactWriter {
+	static final String MANIFEST_FILE = ".jolieslicer-manifest.json";
+
+	private final Path outputDirectory;
+	private final Map< String, String > previousHashes = new TreeMap<>();
+	private final Map< String, String > hashes = new ConcurrentHashMap<>();
+	private final Map< String, Long > sizes = new ConcurrentHashMap<>();
+
+	@FunctionalInterface
+	interface Content {
+		void writeTo( Writer writer ) throws IOException;
+	}
+
+	@FunctionalInterface
+	private interface ByteContent {
+		void writeTo( OutputStream out ) throws IOException;
+	}
+
+	ArtifactWriter( Path outputDirectory ) throws IOException {
+		this.outputDirectory = outputDirectory;
+		Path manifest = outputDirectory.resolve( MANIFEST_FILE );
+		if( Files.exists( manifest ) ) {
+			try( Reader reader = Files.newBufferedReader( manifest, StandardCharsets.UTF_8 ) ) {
+				Object json = JSONValue.parse( reader );
+				if( json instanceof JSONObject ) {
+					for( Map.Entry< ?, ? > entry : ((Map< ?, ? >) json).entrySet() ) {
+						previousHashes.put( entry.getKey().toString(), entry.getValue().toString() );
+					}
+				}
+			}
+		}
+		hashes.putAll( previousHashes );
+	}
+
+	/**
+	 * Writes content to file, unless the file already has exactly that content.
+	 *
+	 * @return true if the file has been (re)written
+	 */
+	boolean write( Path file, Content content ) throws IOException {
+		return writeBytes( file, out -> {
+			Writer writer = new BufferedWriter( new OutputStreamWriter( out, StandardCharsets.UTF_8.newEncoder() ) );
+			content.writeTo( writer );
+			writer.flush();
+		} );
+	}
+
+	/**
+	 * Copies the bytes of source to file, unless the file already has exactly that content.
+	 *
+	 * @return true if the file has been (re)written
+	 */
+	boolean copy( Path file, Path source ) throws IOException {
+		return writeBytes( file, out -> Files.copy( source, out ) );
+	}
+
+	private boolean writeBytes( Path file, ByteContent content ) throws IOException {
+		SlicerEvents.WriteFile event = new SlicerEvents.WriteFile();
+		event.begin();
+		boolean written = false;
+		try {
+			written = writeIfChanged( file, content );
+			return written;
+		} finally {
+			event.end();
+			if( event.shouldCommit() ) {
+				event.path = file.toString();
+				event.bytes = size( file );
+				event.written = written;
+				event.commit();
+			}
+		}
+	}
+
+	private boolean writeIfChanged( Path file, ByteContent content ) throws IOException {
+		Files.createDirectories( file.toAbsolutePath().getParent() );
+		Path temporary = Files.createTempFile( file.toAbsolutePath().getParent(),
+			"." + file.getFileName(), ".tmp" );
+		try {
+			MessageDigest digest = newDigest();
+			try( OutputStream out = new DigestOutputStream( Files.newOutputStream( temporary ), digest ) ) {
+				content.writeTo( out );
+			} catch( UncheckedIOException e ) {
+				throw e.getCause();
+			}
+			String hash = HexFormat.of().formatHex( digest.digest() );
+			String key = key( file );
+			hashes.put( key, hash );
+			sizes.put( key, Files.size( temporary ) );
+			if( hash.equals( previousHashes.get( key ) ) && Files.exists( file )
+				&& Files.size( file ) == sizes.get( key ) ) {
+				return false;
+			}
+			try {
+				Files.move( temporary, file, StandardCopyOption.ATOMIC_MOVE );
+			} catch( AtomicMoveNotSupportedException e ) {
+				Files.move( temporary, file, StandardCopyOption.REPLACE_EXISTING );
+			}
+			return true;
+		} finally {
+			Files.deleteIfExists( temporary );
+		}
+	}
+
+	/**
+	 * Returns the size in bytes of the content last given for file in this run, or 0 if there is none.
+	 */
+	long size( Path file ) {
+		return sizes.getOrDefault( key( file ), 0L );
+	}
+
+	boolean write( Path file, String content ) throws IOException {
+		return write( file, writer -> writer.write( content ) );
+	}
+
+	/**
+	 * Records the hashes of the artifacts in the manifest. Entries of files that no longer exist are
+	 * dropped.
+	 */
+	void save() throws IOException {
+		Map< String, String > manifest = new TreeMap<>();
+		hashes.forEach( ( key, hash ) -> {
+			if( Files.exists( outputDirectory.resolve( key ) ) ) {
+				manifest.put( key, hash );
+			}
+		} );
+		Files.createDirectories( outputDirectory );
+		Files.writeString( outputDirectory.resolve( MANIFEST_FILE ), JSONObject.toJSONString( manifest ),
+			StandardCharsets.UTF_8 );
+	}
+
+	private String key( Path file ) {
+		return outputDirectory.toAbsolutePath().normalize()
+			.relativize( file.toAbsolutePath().normalize() )
+			.toString()
+			.replace( File.separatorChar, '/' );
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance( "SHA-256" );
+		} catch( NoSuchAlgorithmException e ) {
+			throw new IllegalStateException( e );
+		}
+	}
+}
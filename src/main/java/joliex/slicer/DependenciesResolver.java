@@ -27,574 +27,929 @@ import jolie.lang.parse.ast.courier.NotificationForwardStatement;
 import jolie.lang.parse.ast.courier.SolicitResponseForwardStatement;
 import jolie.lang.parse.ast.expression.*;
 import jolie.lang.parse.ast.types.TypeChoiceDefinition;
+import jolie.lang.parse.ast.types.TypeDefinition;
 import jolie.lang.parse.ast.types.TypeDefinitionLink;
 import jolie.lang.parse.ast.types.TypeInlineDefinition;
 import jolie.util.Unit;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
 
-public class DependenciesResolver implements OLVisitor< Unit, Set< OLSyntaxNode > > {
-	final Map< OLSyntaxNode, Set< OLSyntaxNode > > declDependencies = new HashMap<>();
-	final Map< String, ImportStatement > importedSymbolsMap = new HashMap<>();
+/**
+ * Computes the dependencies of the top level declarations of a program.
+ *
+ * Every top level declaration (import statements included) is given a dense integer id. The visitor
+ * computes the direct dependencies of each declaration, which are stored as an adjacency list of ids.
+ * The dependency graph is then condensed into its strongly connected components and the transitive
+ * closure of each component is computed once, as a union of bitsets, in reverse topological order.
+ *
+ * The visits do not build intermediate results: they add the dependencies they find to the
+ * {@link Collector} passed as context, so that visiting nodes without dependencies allocates nothing.
+ * Nested nodes (subtypes, choice alternatives, the body of a service) are not visited recursively but
+ * pushed on the worklist of the collector, which also remembers by identity the nodes already visited
+ * for the current declaration. The traversal is therefore stack safe and linear in the size of the AST,
+ * also in presence of recursive types. The behaviour of a service is only walked for the types named by
+ * its instanceof expressions, skipping the definitions that the {@link ProgramView} hides as dead.
+ *
+ * The direct dependencies of different declarations are independent of each other: for programs with
+ * more than {@link #PARALLEL_THRESHOLD} declarations they are collected concurrently on the fork-join
+ * pool, each task using its own collector and writing only the adjacency lists of its declarations.
+ */
+public class DependenciesResolver implements OLVisitor< DependenciesResolver.Collector, Unit > {
+	/* Number of declarations above which direct dependencies are collected in parallel */
+	static final int PARALLEL_THRESHOLD = Integer.getInteger( "jolieslicer.parallelThreshold", 1024 );
+	/* Number of declarations handled sequentially by each parallel task */
+	private static final int PARALLEL_CHUNK_SIZE = 64;
+	private static final String[] NO_SYMBOLS = {};
+
+	final ProgramView view;
+	final SymbolTable symbols;
+	/* Declarations indexed by their id */
+	final List< OLSyntaxNode > declarations = new ArrayList<>();
+	final Map< OLSyntaxNode, Integer > ids = new IdentityHashMap<>();
+	/* Direct dependencies of each declaration */
+	final int[][] edges;
+	/* Local names of the imported symbols that each declaration refers to directly */
+	final String[][] importedSymbols;
+	/* Strongly connected component of each declaration and transitive closure of each component */
+	final int[] componentOf;
+	final List< BitSet > componentClosures = new ArrayList<>();
+	/* Number of nodes visited and of visits avoided by the memo of the collectors, for statistics */
+	private final LongAdder nodesVisited = new LongAdder();
+	private final LongAdder memoHits = new LongAdder();
 
 	DependenciesResolver( Program p ) {
-		collectDeclarationsAndImportedSymbols( p );
-		/* Compute dependencies */
-		p.accept( this );
+		this( new ProgramView( p ), PARALLEL_THRESHOLD );
+	}
+
+	DependenciesResolver( ProgramView view ) {
+		this( view, PARALLEL_THRESHOLD );
+	}
+
+	DependenciesResolver( ProgramView view, int parallelThreshold ) {
+		SlicerEvents.Resolve event = new SlicerEvents.Resolve();
+		event.begin();
+		this.view = view;
+		symbols = new SymbolTable( view.program() );
+		view.program().children().forEach( n -> {
+			ids.put( n, declarations.size() );
+			declarations.add( n );
+		} );
+		edges = new int[ declarations.size() ][];
+		importedSymbols = new String[ declarations.size() ][];
+		if( declarations.size() > parallelThreshold ) {
+			ForkJoinPool.commonPool().invoke( new CollectEdgesTask( 0, declarations.size() ) );
+		} else {
+			collectEdges( 0, declarations.size() );
+		}
+		componentOf = new int[ declarations.size() ];
+		computeClosures();
+		event.end();
+		if( event.shouldCommit() ) {
+			event.declarations = declarations.size();
+			event.nodesVisited = nodesVisited();
+			event.commit();
+		}
 	}
 
 	Set< OLSyntaxNode > getServiceDependencies( ServiceNode n ) {
-		assert declDependencies.containsKey( n );
-		assert declDependencies.get( n ) != null;
-		return declDependencies.get( n );
-	}
-
-	private void collectDeclarationsAndImportedSymbols( Program program ) {
-		for( OLSyntaxNode n : program.children() ) {
-			if( n instanceof ImportStatement ) {
-				ImportStatement is = (ImportStatement) n;
-				ImportSymbolTarget[] importedSymbols = is.importSymbolTargets();
-				for( ImportSymbolTarget ist : importedSymbols ) {
-					importedSymbolsMap.put( ist.localSymbolName(), is );
+		return toNodes( getServiceDependencyIds( n, Collections.emptyMap() ) );
+	}
+
+	/**
+	 * Returns the ids of the dependencies of the service n, with the interfaces in narrowed keeping only
+	 * the operations they are mapped to (see {@link #getDependencyIds(int, Map)}).
+	 */
+	BitSet getServiceDependencyIds( ServiceNode n, Map< InterfaceDefinition, Set< String > > narrowed ) {
+		assert ids.containsKey( n );
+		SlicerEvents.ResolveService event = new SlicerEvents.ResolveService();
+		event.begin();
+		BitSet dependencies = getDependencyIds( ids.get( n ), narrowed );
+		event.end();
+		if( event.shouldCommit() ) {
+			event.service = n.name();
+			event.dependencies = dependencies.cardinality();
+			event.commit();
+		}
+		return dependencies;
+	}
+
+	/**
+	 * Returns the ids of the declarations that the declaration with the given id transitively depends on.
+	 */
+	BitSet getDependencyIds( int id ) {
+		return componentClosures.get( componentOf[ id ] );
+	}
+
+	/**
+	 * Returns the ids of the declarations that the declaration with the given id transitively depends on
+	 * when the interfaces in narrowed keep only the operations they are mapped to: a narrowed interface
+	 * depends only on the types of the operations it keeps.
+	 *
+	 * Declarations that cannot reach a narrowed interface contribute their precomputed closure, the others
+	 * are visited.
+	 */
+	BitSet getDependencyIds( int id, Map< InterfaceDefinition, Set< String > > narrowed ) {
+		if( narrowed.isEmpty() ) {
+			return getDependencyIds( id );
+		}
+		final BitSet narrowedIds = new BitSet( declarations.size() );
+		final Map< Integer, int[] > narrowedEdges = new HashMap<>();
+		narrowed.forEach( ( iFace, operations ) -> {
+			int i = ids.get( iFace );
+			narrowedIds.set( i );
+			narrowedEdges.put( i, operationsDependencies( iFace, operations ).dependencies.stream().toArray() );
+		} );
+		final BitSet result = new BitSet( declarations.size() );
+		final Deque< Integer > worklist = new ArrayDeque<>();
+		worklist.push( id );
+		while( !worklist.isEmpty() ) {
+			int v = worklist.pop();
+			for( int w : narrowedIds.get( v ) ? narrowedEdges.get( v ) : edges[ v ] ) {
+				if( result.get( w ) ) {
+					continue;
 				}
+				result.set( w );
+				if( narrowedIds.get( w ) || getDependencyIds( w ).intersects( narrowedIds ) ) {
+					worklist.push( w );
+				} else {
+					result.or( getDependencyIds( w ) );
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the symbols that the declarations with the given ids refer to directly, by the import
+	 * statement bringing them in scope. The interfaces in narrowed only refer to the symbols used by the
+	 * operations they keep.
+	 */
+	Map< ImportStatement, Set< String > > getImportedSymbols( BitSet declarationIds,
+		Map< InterfaceDefinition, Set< String > > narrowed ) {
+		final Map< ImportStatement, Set< String > > result = new IdentityHashMap<>();
+		for( int id = declarationIds.nextSetBit( 0 ); id >= 0; id = declarationIds.nextSetBit( id + 1 ) ) {
+			OLSyntaxNode n = declarations.get( id );
+			Collection< String > names = narrowed.containsKey( n )
+				? operationsDependencies( (InterfaceDefinition) n, narrowed.get( n ) ).importedSymbols
+				: Arrays.asList( importedSymbols[ id ] );
+			for( String name : names ) {
+				symbols.importOf( name )
+					.ifPresent( is -> result.computeIfAbsent( is, k -> new TreeSet<>() ).add( name ) );
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the ids of the direct dependencies of the declaration with the given id, those of the
+	 * operations it keeps if it is an interface in narrowed.
+	 */
+	int[] edges( int id, Map< InterfaceDefinition, Set< String > > narrowed ) {
+		OLSyntaxNode n = declarations.get( id );
+		return narrowed.containsKey( n )
+			? operationsDependencies( (InterfaceDefinition) n, narrowed.get( n ) ).dependencies.stream().toArray()
+			: edges[ id ];
+	}
+
+	/*
+	 * Collects the direct dependencies of the given operations of the top level interface iFace.
+	 */
+	private Collector operationsDependencies( InterfaceDefinition iFace, Set< String > operations ) {
+		Collector collector = new Collector( declarations.size() );
+		collector.reset( ids.get( iFace ) );
+		for( String operation : operations ) {
+			OperationDeclaration op = iFace.operationsMap().get( operation );
+			if( op != null ) {
+				op.accept( this, collector );
+			}
+		}
+		OLSyntaxNode next;
+		while( (next = collector.worklist.poll()) != null ) {
+			next.accept( this, collector );
+		}
+		return collector;
+	}
+
+	Set< OLSyntaxNode > toNodes( BitSet dependencyIds ) {
+		Set< OLSyntaxNode > result = new HashSet<>();
+		dependencyIds.stream().forEach( i -> result.add( declarations.get( i ) ) );
+		return result;
+	}
+
+	private void collectEdges( int from, int to ) {
+		Collector collector = new Collector( declarations.size() );
+		for( int id = from; id < to; id++ ) {
+			collector.reset( id );
+			collectDirectDependencies( declarations.get( id ), collector );
+			edges[ id ] = collector.dependencies.stream().toArray();
+			importedSymbols[ id ] = collector.importedSymbols.isEmpty()
+				? NO_SYMBOLS
+				: collector.importedSymbols.toArray( NO_SYMBOLS );
+		}
+		nodesVisited.add( collector.nodesVisited );
+		memoHits.add( collector.memoHits );
+	}
+
+	long nodesVisited() {
+		return nodesVisited.sum();
+	}
+
+	long memoHits() {
+		return memoHits.sum();
+	}
+
+	/**
+	 * Collects the edges of the declarations with ids in [from, to), splitting the range in halves until
+	 * it is small enough to be handled sequentially.
+	 */
+	private final class CollectEdgesTask extends RecursiveAction {
+		private final int from;
+		private final int to;
+
+		private CollectEdgesTask( int from, int to ) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if( to - from <= PARALLEL_CHUNK_SIZE ) {
+				collectEdges( from, to );
+			} else {
+				int middle = (from + to) >>> 1;
+				invokeAll( new CollectEdgesTask( from, middle ), new CollectEdgesTask( middle, to ) );
+			}
+		}
+	}
+
+	private void collectDirectDependencies( OLSyntaxNode declaration, Collector collector ) {
+		if( declaration instanceof InterfaceDefinition ) {
+			collectOperationsDependencies( (InterfaceDefinition) declaration, collector );
+		} else if( !(declaration instanceof ImportStatement) ) {
+			collector.visited.put( declaration, collector.declarationId );
+			collector.nodesVisited++;
+			declaration.accept( this, collector );
+		}
+		OLSyntaxNode next;
+		while( (next = collector.worklist.poll()) != null ) {
+			collector.nodesVisited++;
+			next.accept( this, collector );
+		}
+	}
+
+	/*
+	 * A reference to a top level declaration is a direct dependency, the visitor does not go through it
+	 * since its dependencies are computed separately. Any other node is scheduled for a visit, unless it
+	 * has already been visited for the current declaration.
+	 */
+	private void collectDependenciesOf( OLSyntaxNode n, Collector collector ) {
+		if( symbols.isDeclaration( n ) ) {
+			collector.add( n );
+		} else {
+			collector.schedule( n );
+		}
+	}
+
+	private void collectOperationsDependencies( InterfaceDefinition n, Collector collector ) {
+		for( OperationDeclaration op : n.operationsMap().values() ) {
+			op.accept( this, collector );
+		}
+	}
+
+	/**
+	 * Accumulates the ids of the direct dependencies found while visiting a declaration, together with
+	 * the nodes that still have to be visited.
+	 */
+	final class Collector {
+		private final BitSet dependencies;
+		private final Set< String > importedSymbols = new HashSet<>();
+		private final Deque< OLSyntaxNode > worklist = new ArrayDeque<>();
+		/*
+		 * Maps every node visited so far to the id of the last declaration it was visited for, so that the
+		 * memo never needs to be cleared between declarations.
+		 */
+		private final Map< OLSyntaxNode, Integer > visited = new IdentityHashMap<>();
+		/* Finds the types that behaviours refer to (instanceof), the only types processes can name */
+		private final ProcessWalker typesInBehaviour = new ProcessWalker() {
+			@Override
+			public void visit( InstanceOfExpressionNode n ) {
+				collectDependenciesOf( n.type(), Collector.this );
+				super.visit( n );
+			}
+		};
+		private int declarationId;
+		private long nodesVisited = 0;
+		private long memoHits = 0;
+
+		private Collector( int size ) {
+			dependencies = new BitSet( size );
+		}
+
+		private void add( OLSyntaxNode declaration ) {
+			dependencies.set( ids.get( declaration ) );
+		}
+
+		/*
+		 * Adds the import statement bringing the symbol localName in scope, recording the symbol.
+		 */
+		private void addImported( ImportStatement is, String localName ) {
+			dependencies.set( ids.get( is ) );
+			importedSymbols.add( localName );
+		}
+
+		private void schedule( OLSyntaxNode n ) {
+			Integer previous = visited.put( n, declarationId );
+			if( previous == null || previous != declarationId ) {
+				worklist.push( n );
 			} else {
-				declDependencies.put( n, null );
+				memoHits++;
 			}
 		}
+
+		private void reset( int declarationId ) {
+			this.declarationId = declarationId;
+			dependencies.clear();
+			importedSymbols.clear();
+			worklist.clear();
+		}
+	}
+
+	/*
+	 * Tarjan's algorithm emits the components in reverse topological order: every component reachable
+	 * from a component is closed before it. The recursion of the algorithm is replaced by an explicit
+	 * stack of declarations, each one resuming from the next edge to explore.
+	 *
+	 * The closures are computed from the edges alone, so they can be computed again (e.g. by benchmarks).
+	 */
+	void computeClosures() {
+		componentClosures.clear();
+		int size = declarations.size();
+		int[] index = new int[ size ];
+		int[] lowLink = new int[ size ];
+		int[] nextEdge = new int[ size ];
+		boolean[] onStack = new boolean[ size ];
+		int[] componentStack = new int[ size ];
+		int[] callStack = new int[ size ];
+		int componentTop = 0;
+		int counter = 0;
+		Arrays.fill( index, -1 );
+		for( int root = 0; root < size; root++ ) {
+			if( index[ root ] >= 0 ) {
+				continue;
+			}
+			int callTop = 0;
+			callStack[ callTop++ ] = root;
+			index[ root ] = lowLink[ root ] = counter++;
+			componentStack[ componentTop++ ] = root;
+			onStack[ root ] = true;
+			while( callTop > 0 ) {
+				int v = callStack[ callTop - 1 ];
+				if( nextEdge[ v ] < edges[ v ].length ) {
+					int w = edges[ v ][ nextEdge[ v ]++ ];
+					if( index[ w ] < 0 ) {
+						index[ w ] = lowLink[ w ] = counter++;
+						componentStack[ componentTop++ ] = w;
+						onStack[ w ] = true;
+						callStack[ callTop++ ] = w;
+					} else if( onStack[ w ] ) {
+						lowLink[ v ] = Math.min( lowLink[ v ], index[ w ] );
+					}
+				} else {
+					callTop--;
+					if( callTop > 0 ) {
+						int parent = callStack[ callTop - 1 ];
+						lowLink[ parent ] = Math.min( lowLink[ parent ], lowLink[ v ] );
+					}
+					if( lowLink[ v ] == index[ v ] ) {
+						List< Integer > members = new ArrayList<>();
+						int w;
+						do {
+							w = componentStack[ --componentTop ];
+							onStack[ w ] = false;
+							members.add( w );
+						} while( w != v );
+						closeComponent( members );
+					}
+				}
+			}
+		}
+	}
+
+	private void closeComponent( List< Integer > members ) {
+		int component = componentClosures.size();
+		members.forEach( m -> componentOf[ m ] = component );
+		BitSet closure = new BitSet( declarations.size() );
+		boolean cyclic = members.size() > 1;
+		for( int m : members ) {
+			for( int w : edges[ m ] ) {
+				closure.set( w );
+				if( componentOf[ w ] != component ) {
+					closure.or( componentClosures.get( componentOf[ w ] ) );
+				} else if( w == m ) {
+					cyclic = true;
+				}
+			}
+		}
+		if( !cyclic ) {
+			members.forEach( closure::clear );
+		}
+		componentClosures.add( closure );
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( Program n, Unit ctx ) {
-		Set< OLSyntaxNode > dependencies = new HashSet<>();
-		n.children().forEach( c -> dependencies.addAll( c.accept( this ) ) );
-		return dependencies;
+	public Unit visit( Program n, Collector ctx ) {
+		for( OLSyntaxNode c : n.children() ) {
+			if( !view.isHidden( c ) ) {
+				ctx.schedule( c );
+			}
+		}
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( OneWayOperationDeclaration ow, Unit ctx ) {
-		Set< OLSyntaxNode > result = new HashSet<>();
+	public Unit visit( OneWayOperationDeclaration ow, Collector ctx ) {
 		/*
-		 * If a type is a top level program declaration, we add it to the dependencies of the Operation
-		 * Declaration, otherwise it is an imported symbol and the visitor will add it's import statement as
-		 * dependency.
+		 * If a type is a top level program declaration, it is a dependency of the Operation Declaration,
+		 * otherwise the visitor will add the import statement of the type (or of its links) as dependency.
 		 */
-		if( declDependencies.containsKey( ow.requestType() ) ) {
-			result.add( ow.requestType() );
-		}
-		result.addAll( ow.requestType().accept( this ) );
-		return result;
+		collectDependenciesOf( ow.requestType(), ctx );
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( RequestResponseOperationDeclaration rr, Unit ctx ) {
-		Set< OLSyntaxNode > result = new HashSet<>();
+	public Unit visit( RequestResponseOperationDeclaration rr, Collector ctx ) {
 		/*
-		 * If a type is a top level program declaration, we add it to the dependencies of the
-		 * OperationDeclaration, otherwise it is an imported symbol and the visitor will add it's import
-		 * statement as dependency.
+		 * If a type is a top level program declaration, it is a dependency of the Operation Declaration,
+		 * otherwise the visitor will add the import statement of the type (or of its links) as dependency.
 		 */
-		if( declDependencies.containsKey( rr.requestType() ) ) {
-			result.add( rr.requestType() );
-		}
-		if( declDependencies.containsKey( rr.responseType() ) ) {
-			result.add( rr.responseType() );
-		}
-		result.addAll( rr.requestType().accept( this ) );
-		result.addAll( rr.responseType().accept( this ) );
-		return result;
+		collectDependenciesOf( rr.requestType(), ctx );
+		collectDependenciesOf( rr.responseType(), ctx );
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( DefinitionNode n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( DefinitionNode n, Collector ctx ) {
+		// Dead definitions are hidden by the view, so the types only they refer to are not dependencies
+		ctx.typesInBehaviour.walk( n.body() );
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( ParallelStatement n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( ParallelStatement n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( SequenceStatement n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( SequenceStatement n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( NDChoiceStatement n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( NDChoiceStatement n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( OneWayOperationStatement n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( OneWayOperationStatement n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( RequestResponseOperationStatement n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( RequestResponseOperationStatement n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( NotificationOperationStatement n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( NotificationOperationStatement n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( SolicitResponseOperationStatement n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( SolicitResponseOperationStatement n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( LinkInStatement n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( LinkInStatement n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( LinkOutStatement n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( LinkOutStatement n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( AssignStatement n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( AssignStatement n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( AddAssignStatement n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( AddAssignStatement n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( SubtractAssignStatement n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( SubtractAssignStatement n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( MultiplyAssignStatement n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( MultiplyAssignStatement n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( DivideAssignStatement n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( DivideAssignStatement n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( IfStatement n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( IfStatement n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( DefinitionCallStatement n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( DefinitionCallStatement n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( WhileStatement n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( WhileStatement n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( OrConditionNode n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( OrConditionNode n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( AndConditionNode n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( AndConditionNode n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( NotExpressionNode n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( NotExpressionNode n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( CompareConditionNode n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( CompareConditionNode n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( ConstantIntegerExpression n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( ConstantIntegerExpression n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( ConstantDoubleExpression n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( ConstantDoubleExpression n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( ConstantBoolExpression n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( ConstantBoolExpression n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( ConstantLongExpression n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( ConstantLongExpression n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( ConstantStringExpression n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( ConstantStringExpression n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( ProductExpressionNode n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( ProductExpressionNode n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( SumExpressionNode n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( SumExpressionNode n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( VariableExpressionNode n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( VariableExpressionNode n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( NullProcessStatement n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( NullProcessStatement n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( Scope n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( Scope n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( InstallStatement n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( InstallStatement n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( CompensateStatement n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( CompensateStatement n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( ThrowStatement n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( ThrowStatement n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( ExitStatement n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( ExitStatement n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( ExecutionInfo n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( ExecutionInfo n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( CorrelationSetInfo n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( CorrelationSetInfo n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
-	public Set< OLSyntaxNode > visit( PortInfo n, Unit ctx ) {
-		Set< OLSyntaxNode > result = new HashSet<>();
-		n.getInterfaceList().forEach(
-			iFace -> result.addAll( iFace.accept( this ) ) );
-		return result;
+	public Unit visit( PortInfo n, Collector ctx ) {
+		for( InterfaceDefinition iFace : n.getInterfaceList() ) {
+			collectDependenciesOf( iFace, ctx );
+		}
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( InputPortInfo n, Unit ctx ) {
+	public Unit visit( InputPortInfo n, Collector ctx ) {
 		return visit( (PortInfo) n, ctx );
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( OutputPortInfo n, Unit ctx ) {
+	public Unit visit( OutputPortInfo n, Collector ctx ) {
 		return visit( (PortInfo) n, ctx );
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( PointerStatement n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( PointerStatement n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( DeepCopyStatement n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( DeepCopyStatement n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( RunStatement n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( RunStatement n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( UndefStatement n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( UndefStatement n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( ValueVectorSizeExpressionNode n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( ValueVectorSizeExpressionNode n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( PreIncrementStatement n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( PreIncrementStatement n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( PostIncrementStatement n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( PostIncrementStatement n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( PreDecrementStatement n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( PreDecrementStatement n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( PostDecrementStatement n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( PostDecrementStatement n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( ForStatement n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( ForStatement n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( ForEachSubNodeStatement n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( ForEachSubNodeStatement n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( ForEachArrayItemStatement n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( ForEachArrayItemStatement n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( SpawnStatement n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( SpawnStatement n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( IsTypeExpressionNode n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( IsTypeExpressionNode n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( InstanceOfExpressionNode n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( InstanceOfExpressionNode n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( TypeCastExpressionNode n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( TypeCastExpressionNode n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( SynchronizedStatement n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( SynchronizedStatement n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( CurrentHandlerStatement n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( CurrentHandlerStatement n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( EmbeddedServiceNode n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( EmbeddedServiceNode n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( InstallFixedVariableExpressionNode n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( InstallFixedVariableExpressionNode n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( VariablePathNode n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( VariablePathNode n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( TypeInlineDefinition tid, Unit ctx ) {
-		if( declDependencies.get( tid ) != null ) { // Dependencies already computed
-			return declDependencies.get( tid );
-		}
-		// Otherwise compute its dependencies by visiting the subtypes:
-		Set< OLSyntaxNode > newDependencies = new HashSet<>();
+	public Unit visit( TypeInlineDefinition tid, Collector ctx ) {
+		// Collect its dependencies by visiting the subtypes:
 		if( tid.subTypes() != null ) {
-			tid.subTypes()
-				.stream()
-				.map( e -> e.getValue().accept( this ) )
-				.forEach( newDependencies::addAll );
-		}
-
-		if ( declDependencies.containsKey( tid ) ) { // If tid is a top level declaration
-			// Update its dependencies
-			declDependencies.put( tid, newDependencies );
+			for( Map.Entry< String, TypeDefinition > subType : tid.subTypes() ) {
+				collectDependenciesOf( subType.getValue(), ctx );
+			}
 		}
-		return newDependencies;
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( TypeDefinitionLink tdl, Unit ctx ) {
-		if( declDependencies.get( tdl ) != null ) {
-			return declDependencies.get( tdl );
-		}
-		Set< OLSyntaxNode > newDependencies = new HashSet<>();
-		if( declDependencies.containsKey( tdl.linkedType() ) ) {
-			newDependencies.add( tdl.linkedType() );
-			newDependencies.addAll( tdl.linkedType().accept( this ) );
-		} else if( importedSymbolsMap.containsKey( tdl.linkedTypeName() ) ) {
-			newDependencies.add( importedSymbolsMap.get( tdl.linkedTypeName() ) );
+	public Unit visit( TypeDefinitionLink tdl, Collector ctx ) {
+		Optional< ImportStatement > imported;
+		if( symbols.isDeclaration( tdl.linkedType() ) ) {
+			ctx.add( tdl.linkedType() );
+		} else if( (imported = symbols.importOf( tdl.linkedTypeName() )).isPresent() ) {
+			ctx.addImported( imported.get(), tdl.linkedTypeName() );
+		} else if( tdl.linkedType() != null ) {
+			// A link to a type that is not a top level declaration, the memo guards against cycles
+			ctx.schedule( tdl.linkedType() );
 		} else {
 			// We end up here for the type definition type PAID : long
 			// For which linkedType is null, linkedTypeName is the string "PAID"
 			assert false;
 		}
-		declDependencies.put( tdl, newDependencies );
-		return newDependencies;
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( TypeChoiceDefinition tcd, Unit ctx ) {
-		if( declDependencies.get( tcd ) != null ) {
-			return declDependencies.get( tcd );
-		}
-		// Otherwise compute its dependencies by visiting each alternative:
-		Set< OLSyntaxNode > newDependencies = new HashSet<>();
-		newDependencies.addAll( tcd.left().accept( this ) );
-		newDependencies.addAll( tcd.right().accept( this ) );
-		if ( declDependencies.containsKey( tcd ) ) { // If tcd is a top level declaration
-			// Update its dependencies
-			declDependencies.put( tcd, newDependencies );
-		}
-		return newDependencies;
+	public Unit visit( TypeChoiceDefinition tcd, Collector ctx ) {
+		// Collect its dependencies by visiting each alternative:
+		collectDependenciesOf( tcd.left(), ctx );
+		collectDependenciesOf( tcd.right(), ctx );
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( InterfaceDefinition n, Unit ctx ) {
+	public Unit visit( InterfaceDefinition n, Collector ctx ) {
 		/*
-		 * We have to distinguish between interface definitions of a port declaration and actual interface
-		 * definitions at the top level of the program.
+		 * Top level interface declarations are handled by collectOperationsDependencies, here we only meet
+		 * the interface definitions appearing in a port declaration.
 		 */
-		if( declDependencies.get( n ) != null ) {
-			return declDependencies.get( n );
+		Optional< ImportStatement > imported = symbols.importOf( n.name() );
+		if( imported.isPresent() ) { // The interface is an imported symbol
+			ctx.addImported( imported.get(), n.name() );
+		} else { // The interface is not imported, look up the actual definition in this program
+			InterfaceDefinition actualDefinition = symbols.interfaceDefinition( n.name() ).orElse( null );
+			assert actualDefinition != null;
+			// The actual definition is a dependency of the Port declaration
+			ctx.add( actualDefinition );
 		}
-		Set< OLSyntaxNode > newDependencies = new HashSet<>();
-		if( declDependencies.containsKey( n ) ) { // The declaration is an actual interface declaration
-			n.operationsMap().entrySet()
-				.stream()
-				.map( e -> e.getValue().accept( this ) )
-				.forEach( newDependencies::addAll );
-			declDependencies.put( n, newDependencies );
-		} else { // The interface definition is an interface appearing in a Port declaration.
-			if( importedSymbolsMap.containsKey( n.name() ) ) { // The interface is an imported symbol
-				newDependencies.add( importedSymbolsMap.get( n.name() ) );
-			} else { // The interface is not imported, find the actual definition in this program
-				InterfaceDefinition actualDefinition = null;
-				for( OLSyntaxNode decl : declDependencies.keySet() ) {
-					if( decl instanceof InterfaceDefinition
-						&& ((InterfaceDefinition) decl).name().equals( n.name() ) ) {
-						actualDefinition = (InterfaceDefinition) decl;
-						break;
-					}
-				}
-				assert actualDefinition != null;
-				// The actual definition is a dependency of the Port declaration
-				newDependencies.add( actualDefinition );
-				newDependencies.addAll( actualDefinition.accept( this ) );
-			}
-		}
-		return newDependencies;
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( DocumentationComment n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( DocumentationComment n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( FreshValueExpressionNode n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( FreshValueExpressionNode n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( CourierDefinitionNode n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( CourierDefinitionNode n, Collector ctx ) {
+		ctx.typesInBehaviour.walk( n.body() );
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( CourierChoiceStatement n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( CourierChoiceStatement n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( NotificationForwardStatement n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( NotificationForwardStatement n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( SolicitResponseForwardStatement n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( SolicitResponseForwardStatement n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( InterfaceExtenderDefinition n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( InterfaceExtenderDefinition n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( InlineTreeExpressionNode n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( InlineTreeExpressionNode n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( VoidExpressionNode n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( VoidExpressionNode n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( ProvideUntilStatement n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( ProvideUntilStatement n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( ImportStatement n, Unit ctx ) {
-		return new HashSet<>();
+	public Unit visit( ImportStatement n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( ServiceNode n, Unit ctx ) {
-		if( declDependencies.get( n ) != null ) {
-			return declDependencies.get( n );
-		}
-		Set< OLSyntaxNode > newDependencies = new HashSet<>( n.program().accept( this ) );
-		declDependencies.put( n, newDependencies );
-		return newDependencies;
+	public Unit visit( ServiceNode n, Collector ctx ) {
+		// The printed service names the type of its parameter, which must be in scope in the slice
+		n.parameterConfiguration().ifPresent( param -> {
+			Optional< ImportStatement > imported = symbols.importOf( param.type().name() );
+			if( imported.isPresent() ) {
+				ctx.addImported( imported.get(), param.type().name() );
+			} else {
+				collectDependenciesOf( param.type(), ctx );
+			}
+		} );
+		ctx.schedule( n.program() );
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set< OLSyntaxNode > visit( EmbedServiceNode n, Unit ctx ) {
-		if( importedSymbolsMap.containsKey( n.serviceName() ) ) {
-			return new HashSet<>( Arrays.asList( importedSymbolsMap.get( n.serviceName() ) ) );
+	public Unit visit( EmbedServiceNode n, Collector ctx ) {
+		Optional< ImportStatement > imported = symbols.importOf( n.serviceName() );
+		if( imported.isPresent() ) {
+			ctx.addImported( imported.get(), n.serviceName() );
 		} else {
 			// The service name is not imported. It refers to a ServiceNode declared in this program
-			assert declDependencies.containsKey( n.service() );
-			Set< OLSyntaxNode > dependencies = new HashSet<>( n.service().accept( this ) );
-			dependencies.add( n.service() );
-			return dependencies;
+			assert symbols.isDeclaration( n.service() );
+			ctx.add( n.service() );
 		}
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set<OLSyntaxNode> visit(SolicitResponseExpressionNode n, Unit ctx) {
-		return new HashSet<>();
+	public Unit visit( SolicitResponseExpressionNode n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 
 	@Override
-	public Set<OLSyntaxNode> visit(IfExpressionNode n, Unit ctx) {
-		return new HashSet<>();
+	public Unit visit( IfExpressionNode n, Collector ctx ) {
+		return Unit.INSTANCE;
 	}
 }
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2021 Valentino Picotti
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+package joliex.slicer;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+
+import jolie.lang.parse.ast.InputPortInfo;
+import jolie.lang.parse.ast.InterfaceDefinition;
+import jolie.lang.parse.ast.NotificationOperationStatement;
+import jolie.lang.parse.ast.OLSyntaxNode;
+import jolie.lang.parse.ast.OutputPortInfo;
+import jolie.lang.parse.ast.ServiceNode;
+import jolie.lang.parse.ast.SolicitResponseOperationStatement;
+import jolie.lang.parse.ast.expression.SolicitResponseExpressionNode;
+
+/**
+ * Narrowing of the interfaces that a service uses as a client to the operations it actually invokes.
+ *
+ * The operations invoked on each output port are found in the behaviour of the service (notifications,
+ * solicit-responses and solicit-response expressions). An interface declared in the program is narrowed
+ * to the operations invoked through the output ports it belongs to, unless the slice needs it whole:
+ * - it is an interface of an input port of the service, or of an output port that an input port aggregates;
+ * - another declaration of the slice (e.g. an embedded service) refers to it;
+ * - it is imported, or the service invokes none or all of its operations.
+ */
+final class InterfaceNarrowing {
+	private InterfaceNarrowing() {}
+
+	/**
+	 * Returns the interfaces of the slice of service to narrow, each with the names of the operations to
+	 * keep. The keys are top level declarations of the program, compared by identity.
+	 */
+	static Map< InterfaceDefinition, Set< String > > of( ServiceNode service, DependenciesResolver resolver ) {
+		final Map< String, Set< String > > invoked = invokedOperations( service, resolver.view );
+		final Set< String > aggregated = new HashSet<>();
+		final Set< InterfaceDefinition > pinned = Collections.newSetFromMap( new IdentityHashMap<>() );
+		final Map< InterfaceDefinition, Set< String > > narrowed = new IdentityHashMap<>();
+		for( OLSyntaxNode n : resolver.view.children( service.program() ) ) {
+			if( n instanceof InputPortInfo ) {
+				InputPortInfo port = (InputPortInfo) n;
+				for( InterfaceDefinition iFace : port.getInterfaceList() ) {
+					declarationOf( iFace, resolver ).ifPresent( pinned::add );
+				}
+				for( var item : port.aggregationList() ) {
+					Collections.addAll( aggregated, item.outputPortList() );
+				}
+			}
+		}
+		for( OLSyntaxNode n : resolver.view.children( service.program() ) ) {
+			if( !(n instanceof OutputPortInfo) ) {
+				continue;
+			}
+			OutputPortInfo port = (OutputPortInfo) n;
+			for( InterfaceDefinition iFace : port.getInterfaceList() ) {
+				declarationOf( iFace, resolver ).ifPresent( declaration -> {
+					if( aggregated.contains( port.id() ) ) {
+						pinned.add( declaration );
+					} else {
+						Set< String > operations = narrowed.computeIfAbsent( declaration, k -> new TreeSet<>() );
+						invoked.getOrDefault( port.id(), Collections.emptySet() ).stream()
+							.filter( declaration.operationsMap()::containsKey )
+							.forEach( operations::add );
+					}
+				} );
+			}
+		}
+		// Interfaces that other declarations of the slice refer to must be kept whole
+		final int serviceId = resolver.ids.get( service );
+		final BitSet content = resolver.getDependencyIds( serviceId );
+		for( int id = content.nextSetBit( 0 ); id >= 0; id = content.nextSetBit( id + 1 ) ) {
+			if( id == serviceId ) {
+				continue;
+			}
+			for( int w : resolver.edges[ id ] ) {
+				if( resolver.declarations.get( w ) instanceof InterfaceDefinition ) {
+					pinned.add( (InterfaceDefinition) resolver.declarations.get( w ) );
+				}
+			}
+		}
+		narrowed.keySet().removeAll( pinned );
+		narrowed.entrySet().removeIf( e -> e.getValue().isEmpty()
+			|| e.getValue().size() == e.getKey().operationsMap().size() );
+		return narrowed;
+	}
+
+	/*
+	 * Returns the top level declaration of the interface of a port, if it is declared in the program.
+	 */
+	private static Optional< InterfaceDefinition > declarationOf( InterfaceDefinition iFace,
+		DependenciesResolver resolver ) {
+		if( resolver.symbols.importOf( iFace.name() ).isPresent() ) {
+			return Optional.empty();
+		}
+		return resolver.symbols.interfaceDefinition( iFace.name() );
+	}
+
+	/*
+	 * Returns the names of the operations invoked on each output port in the behaviour of service. The
+	 * definitions hidden by the view (never called) are not considered.
+	 */
+	private static Map< String, Set< String > > invokedOperations( ServiceNode service, ProgramView view ) {
+		final Map< String, Set< String > > invoked = new HashMap<>();
+		final ProcessWalker walker = new ProcessWalker() {
+			@Override
+			public void visit( NotificationOperationStatement n ) {
+				invoked.computeIfAbsent( n.outputPortId(), k -> new HashSet<>() ).add( n.id() );
+				super.visit( n );
+			}
+
+			@Override
+			public void visit( SolicitResponseOperationStatement n ) {
+				invoked.computeIfAbsent( n.outputPortId(), k -> new HashSet<>() ).add( n.id() );
+				super.visit( n );
+			}
+
+			@Override
+			public void visit( SolicitResponseExpressionNode n ) {
+				invoked.computeIfAbsent( n.outputPortId(), k -> new HashSet<>() ).add( n.id() );
+				super.visit( n );
+			}
+		};
+		view.children( service.program() ).forEach( walker::walk );
+		return invoked;
+	}
+}
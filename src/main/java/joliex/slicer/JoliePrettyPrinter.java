@@ -20,14 +20,18 @@
 
 package joliex.slicer;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
@@ -132,20 +136,66 @@ import jolie.util.Pair;
 import jolie.util.Range;
 
 
+/**
+ * Prints Jolie code to a sink as it visits the AST. By default the sink is an in-memory buffer whose
+ * content is returned by {@link #toString()}; printing to a {@link java.io.Writer} streams the output
+ * without keeping it in memory. Errors of the sink are rethrown as {@link UncheckedIOException}.
+ * When a {@link RenderCache} is given, the cacheable top level declarations of the printed program are
+ * taken from the cache instead of being printed again. When a {@link ProgramView} is given, the nodes it
+ * hides are not printed. Pruned declarations are printed with only the members they are mapped to: the
+ * operations of interfaces and the symbols of import statements.
+ */
 public class JoliePrettyPrinter implements UnitOLVisitor {
-	final PrettyPrinter pp = new PrettyPrinter();
+	final PrettyPrinter pp;
+	final RenderCache cache;
+	final ProgramView view;
+	/* Declarations printed with only some of their members (by name), compared by identity */
+	final Map< OLSyntaxNode, Set< String > > prunedDeclarations;
 	boolean isTopLevelTypeDeclaration = true;
 	boolean printOnlyLinkedTypeName = false;
+	boolean isInsideProgram = false;
+
+	public JoliePrettyPrinter() {
+		this( new StringBuilder( 1000 ) );
+	}
+
+	public JoliePrettyPrinter( Appendable sink ) {
+		this( sink, null, null );
+	}
+
+	JoliePrettyPrinter( Appendable sink, RenderCache cache, ProgramView view ) {
+		this( sink, cache, view, Collections.emptyMap() );
+	}
+
+	JoliePrettyPrinter( Appendable sink, RenderCache cache, ProgramView view,
+		Map< OLSyntaxNode, Set< String > > prunedDeclarations ) {
+		this.pp = new PrettyPrinter( sink );
+		this.cache = cache;
+		this.view = view;
+		this.prunedDeclarations = prunedDeclarations;
+	}
 
 	public String toString() {
-		return pp.pp.toString();
+		return pp.out.toString();
 	}
 
 	@Override
 	public void visit( Program n ) {
-		pp.intercalate( n.children(),
-			( child, _0 ) -> child.accept( this ),
+		// Only the declarations of the outermost program are top level declarations
+		boolean useCache = cache != null && !isInsideProgram;
+		boolean backup = isInsideProgram;
+		isInsideProgram = true;
+		pp.intercalate( view == null ? n.children() : view.children( n ),
+			( child, _0 ) -> {
+				// The cache holds the whole text of the declarations, pruned ones are printed here
+				if( useCache && cache.isCacheable( child ) && !prunedDeclarations.containsKey( child ) ) {
+					_0.append( cache.render( child ) );
+				} else {
+					child.accept( this );
+				}
+			},
 			PrettyPrinter::newline );
+		isInsideProgram = backup;
 	}
 
 	@Override
@@ -851,7 +901,9 @@ public class JoliePrettyPrinter implements UnitOLVisitor {
 			.append( n.name() )
 			.space()
 			.newCodeBlock( pp -> {
-				Stream< OperationDeclaration > s = n.operationsMap().values().stream();
+				Set< String > kept = prunedDeclarations.get( n );
+				Stream< OperationDeclaration > s = n.operationsMap().values().stream()
+					.filter( op -> kept == null || kept.contains( op.id() ) );
 				Map< Boolean, List< OperationDeclaration > > operations =
 					s.collect( Collectors.partitioningBy( op -> op instanceof OneWayOperationDeclaration ) );
 				List< OperationDeclaration > oneWayOperations = operations.get( true );
@@ -1012,6 +1064,7 @@ public class JoliePrettyPrinter implements UnitOLVisitor {
 
 	@Override
 	public void visit( ImportStatement n ) {
+		Set< String > kept = prunedDeclarations.get( n );
 		pp.append( Keywords.FROM )
 			.surround(
 				PrettyPrinter::space,
@@ -1019,13 +1072,20 @@ public class JoliePrettyPrinter implements UnitOLVisitor {
 			.append( Keywords.IMPORT )
 			.space()
 			.intercalate(
-				Arrays.asList( n.importSymbolTargets() ),
+				Arrays.stream( n.importSymbolTargets() )
+					.filter( symbol -> kept == null || kept.contains( symbol.localSymbolName() ) )
+					.collect( Collectors.toList() ),
 				( symbol, pp ) -> pp.append( symbol.toString() ),
 				PrettyPrinter::comma );
 	}
 
 	@Override
 	public void visit( ServiceNode n ) {
+		SlicerEvents.PrintService event = new SlicerEvents.PrintService();
+		event.begin();
+		boolean counting = pp.counting;
+		long start = pp.bytes;
+		pp.counting = counting || event.isEnabled();
 		pp.append( Keywords.SERVICE )
 			.space()
 			.append( n.name() )
@@ -1038,6 +1098,14 @@ public class JoliePrettyPrinter implements UnitOLVisitor {
 					.space()
 					.append( param.type().name() ) ) )
 			.newCodeBlock( _0 -> n.program().accept( this ) );
+		pp.counting = counting;
+		event.end();
+		if( event.shouldCommit() ) {
+			event.service = n.name();
+			event.declarations = (view == null ? n.program().children() : view.children( n.program() )).size();
+			event.bytes = pp.bytes - start;
+			event.commit();
+		}
 	}
 
 	@Override
@@ -1060,44 +1128,80 @@ public class JoliePrettyPrinter implements UnitOLVisitor {
 	}
 
 	private static class PrettyPrinter {
-		StringBuilder pp = new StringBuilder( 1000 );
+		final Appendable out;
 		int indentationLevel = 0;
+		/* The UTF-8 length of the code written while counting is set */
+		long bytes = 0;
+		boolean counting = false;
+
+		PrettyPrinter( Appendable out ) {
+			this.out = out;
+		}
+
+		private void write( CharSequence s ) {
+			try {
+				out.append( s );
+			} catch( IOException e ) {
+				throw new UncheckedIOException( e );
+			}
+			if( counting ) {
+				for( int i = 0; i < s.length(); i++ ) {
+					bytes += utf8Length( s.charAt( i ) );
+				}
+			}
+		}
+
+		private void write( char c ) {
+			try {
+				out.append( c );
+			} catch( IOException e ) {
+				throw new UncheckedIOException( e );
+			}
+			if( counting ) {
+				bytes += utf8Length( c );
+			}
+		}
+
+		// Each half of a surrogate pair counts for two of the four bytes of the pair
+		private static int utf8Length( char c ) {
+			return c < 0x80 ? 1 : c < 0x800 || Character.isSurrogate( c ) ? 2 : 3;
+		}
 
 		public PrettyPrinter append( String a ) {
-			pp.append( a );
+			write( a );
 			return this;
 		}
 
 
 		public PrettyPrinter append( char a ) {
-			pp.append( a );
+			write( a );
 			return this;
 		}
 
 		public PrettyPrinter append( int a ) {
-			pp.append( a );
+			write( String.valueOf( a ) );
 			return this;
 		}
 
 		public PrettyPrinter append( long a ) {
-			pp.append( a );
+			write( String.valueOf( a ) );
 			return this;
 		}
 
 		public PrettyPrinter append( float a ) {
-			pp.append( a );
+			write( String.valueOf( a ) );
 			return this;
 		}
 
 		public PrettyPrinter append( double a ) {
-			pp.append( a );
+			write( String.valueOf( a ) );
 			return this;
 		}
 
 		public PrettyPrinter newline() {
-			pp.append( System.lineSeparator() );
+			write( System.lineSeparator() );
 			for( int i = 0; i < indentationLevel; ++i ) {
-				pp.append( '\t' );
+				write( '\t' );
 			}
 			return this;
 		}
@@ -1225,7 +1329,7 @@ public class JoliePrettyPrinter implements UnitOLVisitor {
 		}
 
 		public PrettyPrinter space() {
-			pp.append( ' ' );
+			write( ' ' );
 			return this;
 		}
 
@@ -1237,47 +1341,47 @@ public class JoliePrettyPrinter implements UnitOLVisitor {
 		}
 
 		public PrettyPrinter colon() {
-			pp.append( ':' );
+			write( ':' );
 			return this;
 		}
 
 		public PrettyPrinter comma() {
-			pp.append( ',' );
+			write( ',' );
 			return this;
 		}
 
 		public PrettyPrinter dot() {
-			pp.append( '.' );
+			write( '.' );
 			return this;
 		}
 
 		public PrettyPrinter lparen() {
-			pp.append( '(' );
+			write( '(' );
 			return this;
 		}
 
 		public PrettyPrinter rparen() {
-			pp.append( ')' );
+			write( ')' );
 			return this;
 		}
 
 		public PrettyPrinter lbrack() {
-			pp.append( '[' );
+			write( '[' );
 			return this;
 		}
 
 		public PrettyPrinter rbrack() {
-			pp.append( ']' );
+			write( ']' );
 			return this;
 		}
 
 		public PrettyPrinter lbrace() {
-			pp.append( '{' );
+			write( '{' );
 			return this;
 		}
 
 		public PrettyPrinter rbrace() {
-			pp.append( '}' );
+			write( '}' );
 			return this;
 		}
 	}
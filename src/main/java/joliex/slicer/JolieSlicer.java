@@ -36,22 +36,100 @@ import jolie.runtime.embedding.RequestResponse;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 
+/**
+ * Java service exposing the slicer to Jolie. Its operations are reentrant: requests are run on a bounded
+ * pool of worker threads (jolieslicer.maxConcurrentRequests, by default the number of processors) and
+ * share a cache of parsed programs. Requests for the same program are parsed once, requests for the same
+ * output directory are serialized, any other request runs concurrently.
+ */
 public class JolieSlicer extends JavaService {
 	private static final String PROGRAM_CHILD = "program";
 	public static final String SERVICES_CHILD = "services";
 	public static final String OUTPUT_DIRECTORY_CHILD = "outputDirectory";
+	public static final String CACHE_DIRECTORY_CHILD = "cacheDirectory";
+	public static final String AFFECTED_SERVICES_CHILD = "affectedServices";
+	private static final String TARGETS_CHILD = "targets";
+	private static final String APPLICATIONS_CHILD = "applications";
+	private static final String ERROR_CHILD = "error";
+	private static final String ELAPSED_MILLIS_CHILD = "elapsedMillis";
+	private static final String FAILED_CHILD = "failed";
+	private static final String STATS_CHILD = "stats";
+	private static final String REPORT_CHILD = "report";
+	private static final String NARROW_INTERFACES_CHILD = "narrowInterfaces";
+	private static final String FILE_CHILD = "file";
+	private static final String TOTAL_BYTES_CHILD = "totalBytes";
+	private static final String DUPLICATED_SHARE_CHILD = "duplicatedShare";
+	private static final String ARTIFACTS_CHILD = "artifacts";
+	private static final String FILENAME_CHILD = "filename";
+	private static final String CONTENT_CHILD = "content";
+	private static final String SERVICE_CHILD = "service";
+	private static final String WRITTEN_CHILD = "written";
+	private static final String MODULES_CHILD = "modules";
+	private static final String FILES_CHILD = "files";
 	private static final boolean INCLUDE_DOCUMENTATION = false;
+	private static final int LOCK_STRIPES = 256;
+	private static final int MAX_CONCURRENT_REQUESTS =
+		Integer.getInteger( "jolieslicer.maxConcurrentRequests", Runtime.getRuntime().availableProcessors() );
+	/* Number of applications sliced at the same time by sliceApplications */
+	private static final int APPLICATION_PARALLELISM = Math.max( 1,
+		Integer.getInteger( "jolieslicer.applicationParallelism", Runtime.getRuntime().availableProcessors() ) );
+
+	/* Parsed programs, reused by subsequent requests (e.g. when running as a daemon) */
+	private final ProgramCache programCache = new ProgramCache();
+	/*
+	 * Locks serializing the parsing of the same program and the generation into the same directory,
+	 * striped by key so that their number stays fixed however many programs and directories a long-lived
+	 * daemon serves. Keys sharing a stripe only wait for each other: a stripe is never taken while holding
+	 * another one.
+	 */
+	private final Object[] locks = Stream.generate( Object::new ).limit( LOCK_STRIPES ).toArray();
+	private final ExecutorService executor = Executors.newFixedThreadPool( MAX_CONCURRENT_REQUESTS, r -> {
+		Thread t = new Thread( r, "jolieslicer-worker" );
+		t.setDaemon( true );
+		return t;
+	} );
+	/*
+	 * Pool running the applications of sliceApplications, shared by all the requests so that concurrent
+	 * requests do not slice more than jolieslicer.applicationParallelism applications at a time. Its
+	 * threads are daemon threads, like those of the worker pool.
+	 */
+	private final ForkJoinPool applicationPool = new ForkJoinPool( APPLICATION_PARALLELISM );
  
+	/**
+	 * A set of services to slice into an output directory.
+	 */
+	private static final class Target {
+		private final Path outputDirectory;
+		private final Set< String > services;
+
+		private Target( Path outputDirectory, Set< String > services ) {
+			this.outputDirectory = outputDirectory;
+			this.services = services;
+		}
+	}
+
 	@RequestResponse
-	public void slice( Value request ) throws FaultException {
+	public Value slice( Value request ) throws FaultException {
 
 		final Path programPath = Path.of( request.getFirstChild( PROGRAM_CHILD ).strValue() );
-		final Set<String> services = request.getChildren( SERVICES_CHILD )
-				.stream().map(Value::strValue).collect(Collectors.toSet());
 		final Path outputDirectory;
 		if( request.hasChildren( OUTPUT_DIRECTORY_CHILD ) ) {
 			outputDirectory = Path.of(request.getFirstChild( OUTPUT_DIRECTORY_CHILD ).strValue() );
@@ -61,6 +139,298 @@ public class JolieSlicer extends JavaService {
 			filename = filename.substring( 0, fileExtensionIndex );
 			outputDirectory = programPath.resolveSibling( filename );
 		}
+		final Target target = new Target( outputDirectory, servicesOf( request ) );
+		final Optional< Path > cacheDirectory = cacheDirectoryOf( request );
+		// The interpreter is bound to the calling thread, read its arguments before handing over the request
+		final List< String > args = parserArguments( programPath );
+		final SliceStats stats = new SliceStats();
+		final boolean withStats = withStats( request );
+		final Map< Path, SliceReport > reports = withReport( request ) ? new ConcurrentHashMap<>() : null;
+		final boolean narrowInterfaces = narrowInterfaces( request );
+		return execute( () -> {
+			final Map< Path, Map< String, SortedMap< String, Path > > > modules = new ConcurrentHashMap<>();
+			Value response = affectedServicesResponse( slice( programPath, List.of( target ), cacheDirectory, args,
+				stats, reports, narrowInterfaces, modules ).get( 0 ) );
+			addModules( response, modules.get( target.outputDirectory ) );
+			if( reports != null ) {
+				response.getFirstChild( REPORT_CHILD ).deepCopy( reportResponse( target, reports ) );
+			}
+			if( withStats ) {
+				response.getFirstChild( STATS_CHILD ).deepCopy( stats.toValue() );
+			}
+			return response;
+		} );
+	}
+
+	/**
+	 * Slices one program for many targets, e.g. the deployments of the same application with different
+	 * configurations. The program is parsed and its dependencies are resolved once for all the targets,
+	 * and the declarations shared by the targets are printed once.
+	 */
+	@RequestResponse
+	public Value sliceBatch( Value request ) throws FaultException {
+		final Path programPath = Path.of( request.getFirstChild( PROGRAM_CHILD ).strValue() );
+		final List< Target > targets = new ArrayList<>();
+		for( Value target : request.getChildren( TARGETS_CHILD ) ) {
+			targets.add( new Target(
+				Path.of( target.getFirstChild( OUTPUT_DIRECTORY_CHILD ).strValue() ), servicesOf( target ) ) );
+		}
+		checkOutputDirectories( targets );
+		final Optional< Path > cacheDirectory = cacheDirectoryOf( request );
+		final List< String > args = parserArguments( programPath );
+		final SliceStats stats = new SliceStats();
+		final boolean withStats = withStats( request );
+		final Map< Path, SliceReport > reports = withReport( request ) ? new ConcurrentHashMap<>() : null;
+		final boolean narrowInterfaces = narrowInterfaces( request );
+		return execute( () -> {
+			final Map< Path, Map< String, SortedMap< String, Path > > > modules = new ConcurrentHashMap<>();
+			List< Set< String > > affectedServices =
+				slice( programPath, targets, cacheDirectory, args, stats, reports, narrowInterfaces, modules );
+			Value response = Value.create();
+			for( int i = 0; i < targets.size(); i++ ) {
+				Value target = affectedServicesResponse( affectedServices.get( i ) );
+				target.setFirstChild( OUTPUT_DIRECTORY_CHILD, targets.get( i ).outputDirectory.toString() );
+				addModules( target, modules.get( targets.get( i ).outputDirectory ) );
+				if( reports != null ) {
+					target.getFirstChild( REPORT_CHILD ).deepCopy( reportResponse( targets.get( i ), reports ) );
+				}
+				response.getNewChild( TARGETS_CHILD ).deepCopy( target );
+			}
+			if( withStats ) {
+				response.getFirstChild( STATS_CHILD ).deepCopy( stats.toValue() );
+			}
+			return response;
+		} );
+	}
+
+	/**
+	 * An application to slice: a program, the arguments to parse it with and its target.
+	 */
+	private static final class Application {
+		private final Path programPath;
+		private final List< String > args;
+		private final Target target;
+
+		private Application( Path programPath, List< String > args, Target target ) {
+			this.programPath = programPath;
+			this.args = args;
+			this.target = target;
+		}
+	}
+
+	/**
+	 * Slices many applications in one request. The applications are run as tasks of a work-stealing pool
+	 * of jolieslicer.applicationParallelism threads shared by all the requests, so that parsing, resolving
+	 * and emitting different applications overlap. Applications with the same program share its parse.
+	 *
+	 * A failing application does not stop the others: its error is reported in its own entry of the
+	 * response. Each entry carries the time spent on the application, the response the total time and
+	 * the number of failed applications.
+	 */
+	@RequestResponse
+	public Value sliceApplications( Value request ) throws FaultException {
+		final List< Application > applications = new ArrayList<>();
+		for( Value application : request.getChildren( APPLICATIONS_CHILD ) ) {
+			Path programPath = Path.of( application.getFirstChild( PROGRAM_CHILD ).strValue() );
+			applications.add( new Application( programPath, parserArguments( programPath ), new Target(
+				Path.of( application.getFirstChild( OUTPUT_DIRECTORY_CHILD ).strValue() ),
+				servicesOf( application ) ) ) );
+		}
+		final Optional< Path > cacheDirectory = cacheDirectoryOf( request );
+		final boolean narrowInterfaces = narrowInterfaces( request );
+		return execute( () -> sliceApplications( applications, cacheDirectory, narrowInterfaces ) );
+	}
+
+	private Value sliceApplications( List< Application > applications, Optional< Path > cacheDirectory,
+		boolean narrowInterfaces ) {
+		final long start = System.nanoTime();
+		final List< ForkJoinTask< Value > > tasks = new ArrayList<>();
+		try {
+			for( Application application : applications ) {
+				tasks.add( applicationPool.submit(
+					() -> sliceApplication( application, cacheDirectory, narrowInterfaces ) ) );
+			}
+			Value response = Value.create();
+			int failed = 0;
+			for( ForkJoinTask< Value > task : tasks ) {
+				Value result = task.join();
+				if( result.hasChildren( ERROR_CHILD ) ) {
+					failed++;
+				}
+				response.getNewChild( APPLICATIONS_CHILD ).deepCopy( result );
+			}
+			response.setFirstChild( FAILED_CHILD, failed );
+			response.setFirstChild( ELAPSED_MILLIS_CHILD, (System.nanoTime() - start) / 1_000_000 );
+			return response;
+		} finally {
+			// Do not leave the tasks of a failed request running on the shared pool
+			tasks.forEach( task -> task.cancel( false ) );
+		}
+	}
+
+	private Value sliceApplication( Application application, Optional< Path > cacheDirectory,
+		boolean narrowInterfaces ) {
+		final long start = System.nanoTime();
+		Value result = Value.create();
+		result.setFirstChild( PROGRAM_CHILD, application.programPath.toString() );
+		result.setFirstChild( OUTPUT_DIRECTORY_CHILD, application.target.outputDirectory.toString() );
+		try {
+			final Map< Path, Map< String, SortedMap< String, Path > > > modules = new ConcurrentHashMap<>();
+			slice( application.programPath, List.of( application.target ), cacheDirectory, application.args,
+				new SliceStats(), null, narrowInterfaces, modules )
+				.get( 0 )
+				.forEach( s -> result.getNewChild( AFFECTED_SERVICES_CHILD ).setValue( s ) );
+			addModules( result, modules.get( application.target.outputDirectory ) );
+		} catch( FaultException e ) {
+			Throwable cause = e.getCause() == null ? e : e.getCause();
+			result.setFirstChild( ERROR_CHILD, e.faultName() + ": " + cause.getMessage() );
+		} catch( RuntimeException e ) {
+			result.setFirstChild( ERROR_CHILD, e.getClass().getSimpleName() + ": " + e.getMessage() );
+		}
+		result.setFirstChild( ELAPSED_MILLIS_CHILD, (System.nanoTime() - start) / 1_000_000 );
+		return result;
+	}
+
+	/*
+	 * Faults if two targets have the same output directory, once normalized: each would overwrite the
+	 * slices of the other.
+	 */
+	private static void checkOutputDirectories( List< Target > targets ) throws FaultException {
+		try {
+			Slicer.checkOutputDirectories( targets.stream().map( target -> target.outputDirectory ).toList() );
+		} catch( IllegalArgumentException e ) {
+			throw new FaultException( e.getClass().getSimpleName(), e );
+		}
+	}
+
+	private static Set< String > servicesOf( Value request ) {
+		return request.getChildren( SERVICES_CHILD )
+				.stream().map(Value::strValue).collect(Collectors.toSet());
+	}
+
+	private static boolean withStats( Value request ) {
+		return request.hasChildren( STATS_CHILD ) && request.getFirstChild( STATS_CHILD ).boolValue();
+	}
+
+	private static boolean withReport( Value request ) {
+		return request.hasChildren( REPORT_CHILD ) && request.getFirstChild( REPORT_CHILD ).boolValue();
+	}
+
+	private static boolean narrowInterfaces( Value request ) {
+		return request.hasChildren( NARROW_INTERFACES_CHILD )
+			&& request.getFirstChild( NARROW_INTERFACES_CHILD ).boolValue();
+	}
+
+	private static Value reportResponse( Target target, Map< Path, SliceReport > reports ) {
+		SliceReport report = reports.get( target.outputDirectory );
+		Value response = Value.create();
+		response.setFirstChild( FILE_CHILD,
+			target.outputDirectory.resolve( SliceReport.REPORT_FILE ).toString() );
+		response.setFirstChild( TOTAL_BYTES_CHILD, report.totalBytes() );
+		response.setFirstChild( DUPLICATED_SHARE_CHILD, report.duplicatedShare() );
+		return response;
+	}
+
+	/*
+	 * Adds to response the local modules copied into the directory of each service, if any.
+	 */
+	private static void addModules( Value response, Map< String, SortedMap< String, Path > > modules ) {
+		if( modules == null ) {
+			return;
+		}
+		modules.forEach( ( service, files ) -> {
+			Value entry = response.getNewChild( MODULES_CHILD );
+			entry.setFirstChild( SERVICE_CHILD, service );
+			files.keySet().forEach( file -> entry.getNewChild( FILES_CHILD ).setValue( file ) );
+		} );
+	}
+
+	private static Optional< Path > cacheDirectoryOf( Value request ) {
+		return request.hasChildren( CACHE_DIRECTORY_CHILD )
+			? Optional.of( Path.of( request.getFirstChild( CACHE_DIRECTORY_CHILD ).strValue() ) )
+			: Optional.empty();
+	}
+
+	/**
+	 * Slices the program for each target and returns, in the same order, the services whose code changed
+	 * in each output directory. Targets restored from the cache are skipped, the program is parsed only
+	 * if some target is left. The time spent in each phase is recorded in stats.
+	 *
+	 * If reports is not null, the slice report of each target is written into its output directory and put
+	 * in reports: the cache is not used, since reporting needs the parsed program. If narrowInterfaces is
+	 * true, the interfaces the services use as clients are narrowed to the operations they invoke. The local
+	 * modules copied into the directories of the services of each target are put in modules.
+	 */
+	private List< Set< String > > slice( Path programPath, List< Target > targets, Optional< Path > cacheDirectory,
+		List< String > args, SliceStats stats, Map< Path, SliceReport > reports, boolean narrowInterfaces,
+		Map< Path, Map< String, SortedMap< String, Path > > > modules )
+		throws FaultException {
+		final List< Set< String > > affectedServices = new ArrayList<>();
+		final Map< Path, Set< String > > pending = new LinkedHashMap<>();
+		try {
+			for( Target target : targets ) {
+				Optional< Set< String > > restored = Optional.empty();
+				if( cacheDirectory.isPresent() && reports == null ) {
+					SliceCache cache = new SliceCache( cacheDirectory.get(), programPath, target.services, args,
+						narrowInterfaces );
+					synchronized( lockFor( target.outputDirectory.toAbsolutePath().normalize() ) ) {
+						try( SliceStats.Timer timer = stats.time( "cacheRestore" ) ) {
+							restored = cache.restore( target.outputDirectory );
+						}
+						if( restored.isPresent() ) {
+							modules.put( target.outputDirectory, cache.restoredModules() );
+						}
+					}
+				}
+				affectedServices.add( restored.orElse( null ) );
+				if( restored.isEmpty() ) {
+					pending.put( target.outputDirectory, target.services );
+				}
+			}
+			if( pending.isEmpty() ) { // Warm run, the program does not need to be parsed
+				return affectedServices;
+			}
+			Program program = parse( args, stats );
+			Map< Path, Slicer > slicers = Slicer.create( program, pending, stats, narrowInterfaces, args );
+			for( int i = 0; i < targets.size(); i++ ) {
+				Slicer slicer = slicers.get( targets.get( i ).outputDirectory );
+				if( affectedServices.get( i ) != null || slicer == null ) {
+					continue;
+				}
+				synchronized( lockFor( slicer.outputDirectory.toAbsolutePath().normalize() ) ) {
+					try( SliceStats.Timer timer = stats.time( "emit" ) ) {
+						slicer.generateServiceDirectories();
+					}
+					modules.put( slicer.outputDirectory, slicer.getModules() );
+					if( reports != null ) {
+						try( SliceStats.Timer timer = stats.time( "report" ) ) {
+							SliceReport report = new SliceReport( slicer );
+							report.write( slicer.outputDirectory.resolve( SliceReport.REPORT_FILE ) );
+							reports.put( slicer.outputDirectory, report );
+						}
+					}
+					// The entry copies the emitted slices, another request must not replace them meanwhile
+					if( cacheDirectory.isPresent() ) {
+						SliceCache cache = new SliceCache( cacheDirectory.get(), programPath, slicer.services, args,
+							narrowInterfaces );
+						try( SliceStats.Timer timer = stats.time( "cacheStore" ) ) {
+							cache.store( program, slicer );
+						}
+					}
+				}
+				affectedServices.set( i, slicer.getAffectedServices() );
+			}
+		} catch ( CommandLineException | CodeCheckException | IOException e ) {
+			throw new FaultException( e.getClass().getSimpleName(), e );
+		}
+		return affectedServices;
+	}
+
+	/**
+	 * Returns the arguments for parsing the program: the package paths given to the interpreter running
+	 * this service followed by the program itself. It must be called by the thread serving the request.
+	 */
+	private static List< String > parserArguments( Path programPath ) {
 		ArrayList<String> newArgs = new ArrayList<>();
 		String[] interpreterArgs = Interpreter.getInstance().optionArgs();
 		
@@ -72,30 +442,160 @@ public class JolieSlicer extends JavaService {
 			}
 		}
 		newArgs.add( programPath.toString() );
+		return newArgs;
+	}
+
+	/**
+	 * Returns the package paths (-p) in the parser arguments args.
+	 */
+	static List< Path > packagePaths( List< String > args ) {
+		List< Path > packagePaths = new ArrayList<>();
+		for( int i = 0; i + 1 < args.size(); i++ ) {
+			if( "-p".equals( args.get( i ) ) ) {
+				i++;
+				packagePaths.add( Path.of( args.get( i ) ) );
+			}
+		}
+		return packagePaths;
+	}
+
+	/**
+	 * Parses and verifies the program given by the command line arguments args, unless a parse with the
+	 * same arguments is cached and its sources did not change. Concurrent requests for the same arguments
+	 * wait for a single parse.
+	 *
+	 * The returned program is shared by concurrent requests: slicing never modifies it.
+	 */
+	private Program parse( List< String > args, SliceStats stats )
+		throws CommandLineException, CodeCheckException, IOException {
+		final String key = String.join( "\0", args );
+		synchronized( lockFor( key ) ) {
+			Optional< Program > cached;
+			try( SliceStats.Timer timer = stats.time( "programCacheLookup" ) ) {
+				cached = programCache.get( key );
+			}
+			if( cached.isPresent() ) {
+				stats.count( "programCacheHits", 1 );
+				return cached.get();
+			}
+			Program program = parseProgram( args, stats );
+			programCache.put( key, program );
+			return program;
+		}
+	}
 
+	/**
+	 * Parses and verifies the program given by the command line arguments args, without caching.
+	 */
+	static Program parseProgram( List< String > args ) throws CommandLineException, CodeCheckException, IOException {
+		return parseProgram( args, new SliceStats() );
+	}
+
+	/**
+	 * As {@link #parseProgram(List)}, recording the time spent on the command line ("commandLine") and on
+	 * parsing and verifying the program ("parse", ParsingUtils runs both).
+	 */
+	static Program parseProgram( List< String > args, SliceStats stats )
+		throws CommandLineException, CodeCheckException, IOException {
+		final SliceStats.Timer commandLineTimer = stats.time( "commandLine" );
 		try( CommandLineParser cmdLnParser =
-					 new CommandLineParser( newArgs.toArray(new String[0]), JolieSlicer.class.getClassLoader() ) ) {
+					 new CommandLineParser( args.toArray(new String[0]), JolieSlicer.class.getClassLoader() ) ) {
 
 			Interpreter.Configuration intConf = cmdLnParser.getInterpreterConfiguration();
+			commandLineTimer.close();
 
 			SemanticVerifier.Configuration semVerConfig =
 				new SemanticVerifier.Configuration( intConf.executionTarget() );
 			semVerConfig.setCheckForMain( false );
 
-			Program program = ParsingUtils.parseProgram(
-				intConf.source(),
-				intConf.charset(),
-				intConf.includePaths(),
-				intConf.packagePaths(),
-				intConf.jolieClassLoader(),
-				intConf.constants(),
-				semVerConfig,
-				INCLUDE_DOCUMENTATION );
-
-			final Slicer slicer = Slicer.create( program, outputDirectory, services );
-			slicer.generateServiceDirectories();
-		} catch ( CommandLineException | InvalidConfigurationFileException | CodeCheckException | IOException e ) {
+			try( SliceStats.Timer timer = stats.time( "parse" ) ) {
+				SlicerEvents.Parse event = new SlicerEvents.Parse();
+				event.begin();
+				Program program = ParsingUtils.parseProgram(
+					intConf.source(),
+					intConf.charset(),
+					intConf.includePaths(),
+					intConf.packagePaths(),
+					intConf.jolieClassLoader(),
+					intConf.constants(),
+					semVerConfig,
+					INCLUDE_DOCUMENTATION );
+				event.end();
+				if( event.shouldCommit() ) {
+					event.program = args.get( args.size() - 1 );
+					event.declarations = program.children().size();
+					event.commit();
+				}
+				return program;
+			}
+		}
+	}
+
+	private Object lockFor( Object key ) {
+		return locks[ Math.floorMod( key.hashCode(), locks.length ) ];
+	}
+
+	/**
+	 * Runs task on the worker pool and waits for its result, propagating its fault.
+	 */
+	private Value execute( Callable< Value > task ) throws FaultException {
+		try {
+			return executor.submit( task ).get();
+		} catch( ExecutionException e ) {
+			if( e.getCause() instanceof FaultException ) {
+				throw (FaultException) e.getCause();
+			}
+			throw new FaultException( e.getCause().getClass().getSimpleName(), e.getCause() );
+		} catch( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			throw new FaultException( e.getClass().getSimpleName(), e );
+		}
+	}
+
+	private static Value affectedServicesResponse( Set< String > affectedServices ) {
+		Value response = Value.create();
+		affectedServices.forEach( s -> response.getNewChild( AFFECTED_SERVICES_CHILD ).setValue( s ) );
+		return response;
+	}
+
+	/**
+	 * Writes the given artifacts (paths relative to outputDirectory), skipping those whose content did not
+	 * change since the previous run. Responds with the written files and the services they belong to.
+	 */
+	@RequestResponse
+	public Value writeArtifacts( Value request ) throws FaultException {
+		final Path outputDirectory = Path.of( request.getFirstChild( OUTPUT_DIRECTORY_CHILD ).strValue() );
+		final List< String[] > artifacts = new ArrayList<>();
+		for( Value artifact : request.getChildren( ARTIFACTS_CHILD ) ) {
+			artifacts.add( new String[] {
+				artifact.getFirstChild( FILENAME_CHILD ).strValue(),
+				artifact.getFirstChild( CONTENT_CHILD ).strValue(),
+				artifact.hasChildren( SERVICE_CHILD ) ? artifact.getFirstChild( SERVICE_CHILD ).strValue() : null
+			} );
+		}
+		return execute( () -> writeArtifacts( outputDirectory, artifacts ) );
+	}
+
+	private Value writeArtifacts( Path outputDirectory, List< String[] > artifacts ) throws FaultException {
+		final Value response = Value.create();
+		try {
+			synchronized( lockFor( outputDirectory.toAbsolutePath().normalize() ) ) {
+				ArtifactWriter writer = new ArtifactWriter( outputDirectory );
+				Set< String > affectedServices = new TreeSet<>();
+				for( String[] artifact : artifacts ) {
+					if( writer.write( outputDirectory.resolve( artifact[ 0 ] ), artifact[ 1 ] ) ) {
+						response.getNewChild( WRITTEN_CHILD ).setValue( artifact[ 0 ] );
+						if( artifact[ 2 ] != null ) {
+							affectedServices.add( artifact[ 2 ] );
+						}
+					}
+				}
+				writer.save();
+				affectedServices.forEach( s -> response.getNewChild( AFFECTED_SERVICES_CHILD ).setValue( s ) );
+			}
+		} catch( IOException e ) {
 			throw new FaultException( e.getClass().getSimpleName(), e );
 		}
+		return response;
 	}
 }
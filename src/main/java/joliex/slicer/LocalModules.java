@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2021 Valentino Picotti
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+package joliex.slicer;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jolie.cli.CommandLineException;
+import jolie.lang.CodeCheckException;
+import jolie.lang.parse.ast.ImportStatement;
+import jolie.lang.parse.ast.OLSyntaxNode;
+import jolie.lang.parse.ast.Program;
+
+/**
+ * The local modules that the slices of a program import: the module files under the directory of the
+ * program or under the package paths the program has been parsed with, which a slice needs next to it to
+ * run. The modules of the Jolie installation (under JOLIE_HOME) and the absolute imports found nowhere
+ * else (e.g. the standard library) are left to the interpreter running the slice.
+ *
+ * A slice needs the modules of its own imports and, since the interpreter loads a module as a whole, the
+ * modules imported by those modules, transitively. The imports of a module are the import statements of
+ * its program, parsed with the arguments of the program; the result is memoized, so each module is parsed
+ * once for all the slices.
+ *
+ * An import target is looked up as in the module system of Jolie: a relative target (.a.b, ..a) from the
+ * directory of the importing file, going up one directory for each dot after the first; an absolute one
+ * (a.b) from the directory of the program, from its packages directory and from the package paths, in
+ * this order. The target a.b is the file a/b.ol or, if a/b is a directory, the file a/b/main.ol.
+ */
+class LocalModules {
+	private static final String MODULE_EXTENSION = ".ol";
+	private static final String PACKAGE_MAIN = "main.ol";
+	private static final String PACKAGES_DIRECTORY = "packages";
+
+	/* The program and its directory, null if the program has not been parsed from a file */
+	private final Path programFile;
+	private final Path baseDirectory;
+	/* The arguments the program has been parsed with, without the program */
+	private final List< String > parserOptions;
+	/* The package paths of the parser, except those of the Jolie installation */
+	private final List< Path > packagePaths;
+	/* Modules imported by each module already read */
+	private final Map< Module, List< Module > > imports = new ConcurrentHashMap<>();
+
+	/*
+	 * A module file, with the directory it has been found from: the directory of the program or one of the
+	 * package paths. A module keeps its path relative to that directory in the slice, under the packages
+	 * directory if it comes from a package path, so that the interpreter running the slice finds it with
+	 * the same lookup.
+	 */
+	private record Module( Path root, Path file ) {}
+
+	LocalModules( Program program ) {
+		this( program, List.of() );
+	}
+
+	/**
+	 * Looks up the modules of program with parserArguments, the arguments the program has been parsed
+	 * with (see {@link JolieSlicer#parseProgram(List)}): the package paths (-p) they give, and the same
+	 * options to parse the modules.
+	 */
+	LocalModules( Program program, List< String > parserArguments ) {
+		URI source = program.context().source();
+		this.programFile = source != null && "file".equals( source.getScheme() )
+			? Paths.get( source ).toAbsolutePath().normalize()
+			: null;
+		this.baseDirectory = programFile == null ? null : programFile.getParent();
+		String jolieHome = System.getenv( "JOLIE_HOME" );
+		Path installation = jolieHome == null ? null : Paths.get( jolieHome ).toAbsolutePath().normalize();
+		this.parserOptions = parserArguments.isEmpty()
+			? List.of()
+			: List.copyOf( parserArguments.subList( 0, parserArguments.size() - 1 ) );
+		this.packagePaths = JolieSlicer.packagePaths( parserArguments ).stream()
+			.map( path -> path.toAbsolutePath().normalize() )
+			.filter( path -> installation == null || !path.startsWith( installation ) )
+			.distinct()
+			.toList();
+	}
+
+	/**
+	 * Returns the local modules needed by a slice with the given import statements: the files of their
+	 * targets and of the modules these import, transitively. Each file is mapped from the path relative to
+	 * the directory of the slice where the slice must find it, with '/' as separator.
+	 *
+	 * @throws IOException if a module cannot be read, or if a relative import cannot be copied into the
+	 * slice: its target does not exist or is outside the directory it has been found from
+	 */
+	SortedMap< String, Path > of( Collection< ImportStatement > sliceImports ) throws IOException {
+		final SortedMap< String, Path > modules = new TreeMap<>();
+		if( baseDirectory == null ) {
+			return modules;
+		}
+		final Deque< Module > worklist = new ArrayDeque<>();
+		final Module program = new Module( baseDirectory, programFile );
+		for( ImportStatement is : sliceImports ) {
+			// The slice is printed in a single file, its imports are resolved from the directory of the program
+			resolve( program, baseDirectory, is.prettyPrintTarget() ).ifPresent( worklist::add );
+		}
+		Module module;
+		while( (module = worklist.poll()) != null ) {
+			if( modules.putIfAbsent( relativePath( module ), module.file() ) == null ) {
+				worklist.addAll( importsOf( module ) );
+			}
+		}
+		return modules;
+	}
+
+	private List< Module > importsOf( Module module ) throws IOException {
+		List< Module > result = imports.get( module );
+		if( result == null ) {
+			result = new ArrayList<>();
+			for( OLSyntaxNode n : parse( module ).children() ) {
+				if( n instanceof ImportStatement ) {
+					resolve( module, module.file().getParent(), ((ImportStatement) n).prettyPrintTarget() )
+						.ifPresent( result::add );
+				}
+			}
+			imports.putIfAbsent( module, result );
+		}
+		return result;
+	}
+
+	private Program parse( Module module ) throws IOException {
+		List< String > args = new ArrayList<>( parserOptions );
+		args.add( module.file().toString() );
+		try {
+			return JolieSlicer.parseProgram( args );
+		} catch( CommandLineException | CodeCheckException e ) {
+			throw new IOException( "Module " + module.file() + " cannot be parsed: " + e.getMessage(), e );
+		}
+	}
+
+	/*
+	 * Returns the local module of an import target, imported by importer from a file in directory, or
+	 * nothing if the target is absolute and is not a local module.
+	 */
+	private Optional< Module > resolve( Module importer, Path directory, String target ) throws IOException {
+		int dots = 0;
+		while( dots < target.length() && target.charAt( dots ) == '.' ) {
+			dots++;
+		}
+		String modulePath = target.substring( dots ).replace( '.', File.separatorChar );
+		if( modulePath.isEmpty() ) {
+			return Optional.empty();
+		}
+		if( dots == 0 ) {
+			Optional< Path > file = find( baseDirectory, modulePath )
+				.or( () -> find( baseDirectory.resolve( PACKAGES_DIRECTORY ), modulePath ) );
+			if( file.isPresent() ) {
+				return Optional.of( new Module( baseDirectory, file.get() ) );
+			}
+			for( Path packagePath : packagePaths ) {
+				file = find( packagePath, modulePath );
+				if( file.isPresent() ) {
+					return Optional.of( new Module( packagePath, file.get() ) );
+				}
+			}
+			return Optional.empty();
+		}
+		Path from = directory;
+		for( int i = 1; i < dots && from != null; i++ ) {
+			from = from.getParent();
+		}
+		Optional< Path > file = from == null ? Optional.empty() : find( from, modulePath );
+		if( file.isEmpty() ) {
+			throw new NoSuchFileException( target, null,
+				"Module imported by " + importer.file() + " not found" );
+		}
+		if( !file.get().startsWith( importer.root() ) ) {
+			throw new IOException( "Module " + file.get() + " imported by " + importer.file()
+				+ " is outside " + importer.root() + " and cannot be copied into the slices" );
+		}
+		return Optional.of( new Module( importer.root(), file.get() ) );
+	}
+
+	/*
+	 * Returns the file of the module at modulePath from directory: modulePath.ol, or modulePath/main.ol if
+	 * modulePath is a directory.
+	 */
+	private static Optional< Path > find( Path directory, String modulePath ) {
+		Path file = directory.resolve( modulePath + MODULE_EXTENSION ).normalize();
+		if( Files.isRegularFile( file ) ) {
+			return Optional.of( file );
+		}
+		Path main = directory.resolve( modulePath ).resolve( PACKAGE_MAIN ).normalize();
+		return Files.isRegularFile( main ) ? Optional.of( main ) : Optional.empty();
+	}
+
+	private String relativePath( Module module ) {
+		Path relativePath = module.root().equals( baseDirectory )
+			? baseDirectory.relativize( module.file() )
+			: Paths.get( PACKAGES_DIRECTORY ).resolve( module.root().relativize( module.file() ) );
+		return relativePath.toString().replace( File.separatorChar, '/' );
+	}
+}
@@ -0,0 +1,535 @@
+/*
+ * Copyright (C) 2021 Valentino Picotti
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+package joliex.slicer;
+
+import java.util.Arrays;
+
+import jolie.lang.Constants;
+import jolie.lang.parse.UnitOLVisitor;
+import jolie.lang.parse.ast.AddAssignStatement;
+import jolie.lang.parse.ast.AssignStatement;
+import jolie.lang.parse.ast.CompareConditionNode;
+import jolie.lang.parse.ast.CompensateStatement;
+import jolie.lang.parse.ast.CorrelationSetInfo;
+import jolie.lang.parse.ast.CurrentHandlerStatement;
+import jolie.lang.parse.ast.DeepCopyStatement;
+import jolie.lang.parse.ast.DefinitionCallStatement;
+import jolie.lang.parse.ast.DefinitionNode;
+import jolie.lang.parse.ast.DivideAssignStatement;
+import jolie.lang.parse.ast.DocumentationComment;
+import jolie.lang.parse.ast.EmbedServiceNode;
+import jolie.lang.parse.ast.EmbeddedServiceNode;
+import jolie.lang.parse.ast.ExecutionInfo;
+import jolie.lang.parse.ast.ExitStatement;
+import jolie.lang.parse.ast.ForEachArrayItemStatement;
+import jolie.lang.parse.ast.ForEachSubNodeStatement;
+import jolie.lang.parse.ast.ForStatement;
+import jolie.lang.parse.ast.IfStatement;
+import jolie.lang.parse.ast.ImportStatement;
+import jolie.lang.parse.ast.InputPortInfo;
+import jolie.lang.parse.ast.InstallFixedVariableExpressionNode;
+import jolie.lang.parse.ast.InstallStatement;
+import jolie.lang.parse.ast.InterfaceDefinition;
+import jolie.lang.parse.ast.InterfaceExtenderDefinition;
+import jolie.lang.parse.ast.LinkInStatement;
+import jolie.lang.parse.ast.LinkOutStatement;
+import jolie.lang.parse.ast.MultiplyAssignStatement;
+import jolie.lang.parse.ast.NDChoiceStatement;
+import jolie.lang.parse.ast.NotificationOperationStatement;
+import jolie.lang.parse.ast.NullProcessStatement;
+import jolie.lang.parse.ast.OLSyntaxNode;
+import jolie.lang.parse.ast.OneWayOperationDeclaration;
+import jolie.lang.parse.ast.OneWayOperationStatement;
+import jolie.lang.parse.ast.OutputPortInfo;
+import jolie.lang.parse.ast.ParallelStatement;
+import jolie.lang.parse.ast.PointerStatement;
+import jolie.lang.parse.ast.PostDecrementStatement;
+import jolie.lang.parse.ast.PostIncrementStatement;
+import jolie.lang.parse.ast.PreDecrementStatement;
+import jolie.lang.parse.ast.PreIncrementStatement;
+import jolie.lang.parse.ast.Program;
+import jolie.lang.parse.ast.ProvideUntilStatement;
+import jolie.lang.parse.ast.RequestResponseOperationDeclaration;
+import jolie.lang.parse.ast.RequestResponseOperationStatement;
+import jolie.lang.parse.ast.RunStatement;
+import jolie.lang.parse.ast.Scope;
+import jolie.lang.parse.ast.SequenceStatement;
+import jolie.lang.parse.ast.ServiceNode;
+import jolie.lang.parse.ast.SolicitResponseOperationStatement;
+import jolie.lang.parse.ast.SpawnStatement;
+import jolie.lang.parse.ast.SubtractAssignStatement;
+import jolie.lang.parse.ast.SynchronizedStatement;
+import jolie.lang.parse.ast.ThrowStatement;
+import jolie.lang.parse.ast.TypeCastExpressionNode;
+import jolie.lang.parse.ast.UndefStatement;
+import jolie.lang.parse.ast.ValueVectorSizeExpressionNode;
+import jolie.lang.parse.ast.VariablePathNode;
+import jolie.lang.parse.ast.WhileStatement;
+import jolie.lang.parse.ast.courier.CourierChoiceStatement;
+import jolie.lang.parse.ast.courier.CourierDefinitionNode;
+import jolie.lang.parse.ast.courier.NotificationForwardStatement;
+import jolie.lang.parse.ast.courier.SolicitResponseForwardStatement;
+import jolie.lang.parse.ast.expression.AndConditionNode;
+import jolie.lang.parse.ast.expression.ConstantBoolExpression;
+import jolie.lang.parse.ast.expression.ConstantDoubleExpression;
+import jolie.lang.parse.ast.expression.ConstantIntegerExpression;
+import jolie.lang.parse.ast.expression.ConstantLongExpression;
+import jolie.lang.parse.ast.expression.ConstantStringExpression;
+import jolie.lang.parse.ast.expression.FreshValueExpressionNode;
+import jolie.lang.parse.ast.expression.IfExpressionNode;
+import jolie.lang.parse.ast.expression.InlineTreeExpressionNode;
+import jolie.lang.parse.ast.expression.InlineTreeExpressionNode.AssignmentOperation;
+import jolie.lang.parse.ast.expression.InlineTreeExpressionNode.DeepCopyOperation;
+import jolie.lang.parse.ast.expression.InlineTreeExpressionNode.PointsToOperation;
+import jolie.lang.parse.ast.expression.InstanceOfExpressionNode;
+import jolie.lang.parse.ast.expression.IsTypeExpressionNode;
+import jolie.lang.parse.ast.expression.NotExpressionNode;
+import jolie.lang.parse.ast.expression.OrConditionNode;
+import jolie.lang.parse.ast.expression.ProductExpressionNode;
+import jolie.lang.parse.ast.expression.SolicitResponseExpressionNode;
+import jolie.lang.parse.ast.expression.SumExpressionNode;
+import jolie.lang.parse.ast.expression.VariableExpressionNode;
+import jolie.lang.parse.ast.expression.VoidExpressionNode;
+import jolie.lang.parse.ast.types.TypeChoiceDefinition;
+import jolie.lang.parse.ast.types.TypeDefinitionLink;
+import jolie.lang.parse.ast.types.TypeInlineDefinition;
+import jolie.util.Pair;
+
+/**
+ * Visits the behaviour of a service: the definitions in its program, the processes in their bodies and
+ * the expressions in the processes. Every visit only descends into the children of the node, subclasses
+ * override the visits of the nodes they are interested in (calling the inherited visit to keep
+ * descending). Declarations (ports, types, interfaces, embeddings, nested services) are not visited.
+ */
+abstract class ProcessWalker implements UnitOLVisitor {
+
+	/*
+	 * Visits n if present: optional parts of statements (e.g. the output expression of a notification)
+	 * are null when missing.
+	 */
+	void walk( OLSyntaxNode n ) {
+		if( n != null ) {
+			n.accept( this );
+		}
+	}
+
+	@Override
+	public void visit( Program n ) {
+		n.children().forEach( this::walk );
+	}
+
+	@Override
+	public void visit( OneWayOperationDeclaration decl ) {}
+
+	@Override
+	public void visit( RequestResponseOperationDeclaration decl ) {}
+
+	@Override
+	public void visit( DefinitionNode n ) {
+		walk( n.body() );
+	}
+
+	@Override
+	public void visit( ParallelStatement n ) {
+		n.children().forEach( this::walk );
+	}
+
+	@Override
+	public void visit( SequenceStatement n ) {
+		n.children().forEach( this::walk );
+	}
+
+	@Override
+	public void visit( NDChoiceStatement n ) {
+		for( Pair< OLSyntaxNode, OLSyntaxNode > pair : n.children() ) {
+			walk( pair.key() );
+			walk( pair.value() );
+		}
+	}
+
+	@Override
+	public void visit( OneWayOperationStatement n ) {
+		walk( n.inputVarPath() );
+	}
+
+	@Override
+	public void visit( RequestResponseOperationStatement n ) {
+		walk( n.inputVarPath() );
+		walk( n.outputExpression() );
+		walk( n.process() );
+	}
+
+	@Override
+	public void visit( NotificationOperationStatement n ) {
+		walk( n.outputExpression() );
+	}
+
+	@Override
+	public void visit( SolicitResponseOperationStatement n ) {
+		walk( n.outputExpression() );
+		walk( n.inputVarPath() );
+	}
+
+	@Override
+	public void visit( LinkInStatement n ) {}
+
+	@Override
+	public void visit( LinkOutStatement n ) {}
+
+	@Override
+	public void visit( AssignStatement n ) {
+		walk( n.variablePath() );
+		walk( n.expression() );
+	}
+
+	@Override
+	public void visit( AddAssignStatement n ) {
+		walk( n.variablePath() );
+		walk( n.expression() );
+	}
+
+	@Override
+	public void visit( SubtractAssignStatement n ) {
+		walk( n.variablePath() );
+		walk( n.expression() );
+	}
+
+	@Override
+	public void visit( MultiplyAssignStatement n ) {
+		walk( n.variablePath() );
+		walk( n.expression() );
+	}
+
+	@Override
+	public void visit( DivideAssignStatement n ) {
+		walk( n.variablePath() );
+		walk( n.expression() );
+	}
+
+	@Override
+	public void visit( IfStatement n ) {
+		for( Pair< OLSyntaxNode, OLSyntaxNode > pair : n.children() ) {
+			walk( pair.key() );
+			walk( pair.value() );
+		}
+		walk( n.elseProcess() );
+	}
+
+	@Override
+	public void visit( DefinitionCallStatement n ) {}
+
+	@Override
+	public void visit( WhileStatement n ) {
+		walk( n.condition() );
+		walk( n.body() );
+	}
+
+	@Override
+	public void visit( OrConditionNode n ) {
+		n.children().forEach( this::walk );
+	}
+
+	@Override
+	public void visit( AndConditionNode n ) {
+		n.children().forEach( this::walk );
+	}
+
+	@Override
+	public void visit( NotExpressionNode n ) {
+		walk( n.expression() );
+	}
+
+	@Override
+	public void visit( CompareConditionNode n ) {
+		walk( n.leftExpression() );
+		walk( n.rightExpression() );
+	}
+
+	@Override
+	public void visit( ConstantIntegerExpression n ) {}
+
+	@Override
+	public void visit( ConstantDoubleExpression n ) {}
+
+	@Override
+	public void visit( ConstantBoolExpression n ) {}
+
+	@Override
+	public void visit( ConstantLongExpression n ) {}
+
+	@Override
+	public void visit( ConstantStringExpression n ) {}
+
+	@Override
+	public void visit( ProductExpressionNode n ) {
+		for( Pair< Constants.OperandType, OLSyntaxNode > operand : n.operands() ) {
+			walk( operand.value() );
+		}
+	}
+
+	@Override
+	public void visit( SumExpressionNode n ) {
+		for( Pair< Constants.OperandType, OLSyntaxNode > operand : n.operands() ) {
+			walk( operand.value() );
+		}
+	}
+
+	@Override
+	public void visit( VariableExpressionNode n ) {
+		walk( n.variablePath() );
+	}
+
+	@Override
+	public void visit( NullProcessStatement n ) {}
+
+	@Override
+	public void visit( Scope n ) {
+		walk( n.body() );
+	}
+
+	@Override
+	public void visit( InstallStatement n ) {
+		Arrays.asList( n.handlersFunction().pairs() ).forEach( pair -> walk( pair.value() ) );
+	}
+
+	@Override
+	public void visit( CompensateStatement n ) {}
+
+	@Override
+	public void visit( ThrowStatement n ) {
+		walk( n.expression() );
+	}
+
+	@Override
+	public void visit( ExitStatement n ) {}
+
+	@Override
+	public void visit( ExecutionInfo n ) {}
+
+	@Override
+	public void visit( CorrelationSetInfo n ) {}
+
+	@Override
+	public void visit( InputPortInfo n ) {}
+
+	@Override
+	public void visit( OutputPortInfo n ) {}
+
+	@Override
+	public void visit( PointerStatement n ) {
+		walk( n.leftPath() );
+		walk( n.rightPath() );
+	}
+
+	@Override
+	public void visit( DeepCopyStatement n ) {
+		walk( n.leftPath() );
+		walk( n.rightExpression() );
+	}
+
+	@Override
+	public void visit( RunStatement n ) {}
+
+	@Override
+	public void visit( UndefStatement n ) {
+		walk( n.variablePath() );
+	}
+
+	@Override
+	public void visit( ValueVectorSizeExpressionNode n ) {
+		walk( n.variablePath() );
+	}
+
+	@Override
+	public void visit( PreIncrementStatement n ) {
+		walk( n.variablePath() );
+	}
+
+	@Override
+	public void visit( PostIncrementStatement n ) {
+		walk( n.variablePath() );
+	}
+
+	@Override
+	public void visit( PreDecrementStatement n ) {
+		walk( n.variablePath() );
+	}
+
+	@Override
+	public void visit( PostDecrementStatement n ) {
+		walk( n.variablePath() );
+	}
+
+	@Override
+	public void visit( ForStatement n ) {
+		walk( n.init() );
+		walk( n.condition() );
+		walk( n.post() );
+		walk( n.body() );
+	}
+
+	@Override
+	public void visit( ForEachSubNodeStatement n ) {
+		walk( n.keyPath() );
+		walk( n.targetPath() );
+		walk( n.body() );
+	}
+
+	@Override
+	public void visit( ForEachArrayItemStatement n ) {
+		walk( n.keyPath() );
+		walk( n.targetPath() );
+		walk( n.body() );
+	}
+
+	@Override
+	public void visit( SpawnStatement n ) {
+		walk( n.indexVariablePath() );
+		walk( n.upperBoundExpression() );
+		walk( n.inVariablePath() );
+		walk( n.body() );
+	}
+
+	@Override
+	public void visit( IsTypeExpressionNode n ) {
+		walk( n.variablePath() );
+	}
+
+	@Override
+	public void visit( InstanceOfExpressionNode n ) {
+		walk( n.expression() );
+	}
+
+	@Override
+	public void visit( TypeCastExpressionNode n ) {
+		walk( n.expression() );
+	}
+
+	@Override
+	public void visit( SynchronizedStatement n ) {
+		walk( n.body() );
+	}
+
+	@Override
+	public void visit( CurrentHandlerStatement n ) {}
+
+	@Override
+	public void visit( EmbeddedServiceNode n ) {}
+
+	@Override
+	public void visit( InstallFixedVariableExpressionNode n ) {
+		walk( n.variablePath() );
+	}
+
+	@Override
+	public void visit( VariablePathNode n ) {
+		for( Pair< OLSyntaxNode, OLSyntaxNode > element : n.path() ) {
+			walk( element.key() );
+			walk( element.value() );
+		}
+	}
+
+	@Override
+	public void visit( TypeInlineDefinition n ) {}
+
+	@Override
+	public void visit( TypeDefinitionLink n ) {}
+
+	@Override
+	public void visit( InterfaceDefinition n ) {}
+
+	@Override
+	public void visit( DocumentationComment n ) {}
+
+	@Override
+	public void visit( FreshValueExpressionNode n ) {}
+
+	@Override
+	public void visit( CourierDefinitionNode n ) {
+		walk( n.body() );
+	}
+
+	@Override
+	public void visit( CourierChoiceStatement n ) {
+		n.interfaceOneWayBranches().forEach( branch -> walk( branch.body ) );
+		n.interfaceRequestResponseBranches().forEach( branch -> walk( branch.body ) );
+		n.operationOneWayBranches().forEach( branch -> walk( branch.body ) );
+		n.operationRequestResponseBranches().forEach( branch -> walk( branch.body ) );
+	}
+
+	@Override
+	public void visit( NotificationForwardStatement n ) {}
+
+	@Override
+	public void visit( SolicitResponseForwardStatement n ) {}
+
+	@Override
+	public void visit( InterfaceExtenderDefinition n ) {}
+
+	@Override
+	public void visit( InlineTreeExpressionNode n ) {
+		walk( n.rootExpression() );
+		for( Object operation : n.operations() ) {
+			if( operation instanceof AssignmentOperation ) {
+				walk( ((AssignmentOperation) operation).path() );
+				walk( ((AssignmentOperation) operation).expression() );
+			} else if( operation instanceof DeepCopyOperation ) {
+				walk( ((DeepCopyOperation) operation).path() );
+				walk( ((DeepCopyOperation) operation).expression() );
+			} else if( operation instanceof PointsToOperation ) {
+				walk( ((PointsToOperation) operation).path() );
+				walk( ((PointsToOperation) operation).target() );
+			}
+		}
+	}
+
+	@Override
+	public void visit( VoidExpressionNode n ) {}
+
+	@Override
+	public void visit( ProvideUntilStatement n ) {
+		walk( n.provide() );
+		walk( n.until() );
+	}
+
+	@Override
+	public void visit( TypeChoiceDefinition n ) {}
+
+	@Override
+	public void visit( ImportStatement n ) {}
+
+	@Override
+	public void visit( ServiceNode n ) {}
+
+	@Override
+	public void visit( EmbedServiceNode n ) {}
+
+	@Override
+	public void visit( SolicitResponseExpressionNode n ) {
+		walk( n.outputExpression() );
+	}
+
+	@Override
+	public void visit( IfExpressionNode n ) {
+		walk( n.guard() );
+		walk( n.thenExpression() );
+		walk( n.elseExpression() );
+	}
+}
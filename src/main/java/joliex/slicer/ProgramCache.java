@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2021 Valentino Picotti
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+package joliex.slicer;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import jolie.lang.parse.ast.Program;
+
+/**
+ * In-memory cache of parsed programs, keyed by the arguments they have been parsed with. A cached
+ * program is returned only while its {@link SourceFingerprint} is current. The least recently used
+ * programs are evicted when the cache holds more than jolieslicer.programCacheSize (default 16) entries.
+ */
+class ProgramCache {
+	private static final int CAPACITY = Integer.getInteger( "jolieslicer.programCacheSize", 16 );
+
+	private static class Entry {
+		private final Program program;
+		private final SourceFingerprint fingerprint;
+
+		private Entry( Program program, SourceFingerprint fingerprint ) {
+			this.program = program;
+			this.fingerprint = fingerprint;
+		}
+	}
+
+	private final Map< String, Entry > entries = new LinkedHashMap<>( 16, 0.75f, true ) {
+		@Override
+		protected boolean removeEldestEntry( Map.Entry< String, Entry > eldest ) {
+			return size() > CAPACITY;
+		}
+	};
+
+	synchronized Optional< Program > get( String key ) throws IOException {
+		Entry entry = entries.get( key );
+		if( entry == null ) {
+			return Optional.empty();
+		}
+		if( !entry.fingerprint.isCurrent() ) {
+			entries.remove( key );
+			return Optional.empty();
+		}
+		return Optional.of( entry.program );
+	}
+
+	void put( String key, Program program ) throws IOException {
+		Entry entry = new Entry( program, SourceFingerprint.of( program ) );
+		synchronized( this ) {
+			entries.put( key, entry );
+		}
+	}
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2021 Valentino Picotti
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+package joliex.slicer;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import jolie.lang.Keywords;
+import jolie.lang.parse.ast.DefinitionCallStatement;
+import jolie.lang.parse.ast.DefinitionNode;
+import jolie.lang.parse.ast.EmbedServiceNode;
+import jolie.lang.parse.ast.OLSyntaxNode;
+import jolie.lang.parse.ast.Program;
+import jolie.lang.parse.ast.ServiceNode;
+
+/**
+ * Read-only view of a parsed program that hides the nodes the slicer must not see, without modifying the
+ * program. These are:
+ * - the input ports that the parser generates for the embeddings "embed S as P": they are generated again
+ *   when a slice is parsed;
+ * - the dead definitions of the services, the procedures (define) never called from main, init or the
+ *   other behaviours of their service, directly or through other procedures. Since hidden nodes are not
+ *   visited by the dependencies resolver, the declarations referred to only by dead definitions are left
+ *   out of the slices too.
+ *
+ * The view never changes the underlying AST, so a program can be sliced any number of times, with
+ * different services and concurrently. Slices share the nodes of the program.
+ */
+class ProgramView {
+	private final Program program;
+	private final Set< OLSyntaxNode > hidden = Collections.newSetFromMap( new IdentityHashMap<>() );
+	private int deadDefinitions = 0;
+
+	ProgramView( Program program ) {
+		this.program = program;
+		program.children()
+			.stream()
+			.filter( ServiceNode.class::isInstance )
+			.map( ServiceNode.class::cast )
+			.forEach( s -> {
+				s.program().children()
+					.stream()
+					.filter( EmbedServiceNode.class::isInstance )
+					.map( EmbedServiceNode.class::cast )
+					.filter( EmbedServiceNode::isNewPort )
+					.map( EmbedServiceNode::bindingPort )
+					.forEach( hidden::add );
+				hideDeadDefinitions( s.program() );
+			} );
+	}
+
+	/*
+	 * Hides the procedures of a service that are not reachable through calls from its other behaviours:
+	 * main, init and anything that is not a procedure (e.g. couriers).
+	 */
+	private void hideDeadDefinitions( Program service ) {
+		final Map< String, DefinitionNode > procedures = new HashMap<>();
+		final Deque< OLSyntaxNode > worklist = new ArrayDeque<>();
+		for( OLSyntaxNode n : service.children() ) {
+			if( n instanceof DefinitionNode && !Keywords.MAIN.equals( ((DefinitionNode) n).id() )
+				&& !Keywords.INIT.equals( ((DefinitionNode) n).id() ) ) {
+				procedures.put( ((DefinitionNode) n).id(), (DefinitionNode) n );
+			} else {
+				worklist.add( n );
+			}
+		}
+		if( procedures.isEmpty() ) {
+			return;
+		}
+		final Set< String > called = new HashSet<>();
+		final ProcessWalker calls = new ProcessWalker() {
+			@Override
+			public void visit( DefinitionCallStatement n ) {
+				DefinitionNode procedure = procedures.get( n.id() );
+				if( procedure != null && called.add( n.id() ) ) {
+					worklist.add( procedure );
+				}
+			}
+		};
+		OLSyntaxNode next;
+		while( (next = worklist.poll()) != null ) {
+			calls.walk( next );
+		}
+		procedures.forEach( ( id, procedure ) -> {
+			if( !called.contains( id ) ) {
+				hidden.add( procedure );
+				deadDefinitions++;
+			}
+		} );
+	}
+
+	Program program() {
+		return program;
+	}
+
+	/**
+	 * Returns the number of procedures hidden because they are never called.
+	 */
+	int deadDefinitions() {
+		return deadDefinitions;
+	}
+
+	boolean isHidden( OLSyntaxNode n ) {
+		return hidden.contains( n );
+	}
+
+	/**
+	 * Returns the children of p that are not hidden, p being the program or any program nested in it.
+	 */
+	List< OLSyntaxNode > children( Program p ) {
+		if( hidden.isEmpty() ) {
+			return p.children();
+		}
+		return p.children().stream().filter( n -> !hidden.contains( n ) ).collect( Collectors.toList() );
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2021 Valentino Picotti
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+package joliex.slicer;
+
+import jolie.lang.parse.ast.InterfaceDefinition;
+import jolie.lang.parse.ast.OLSyntaxNode;
+import jolie.lang.parse.ast.types.TypeDefinition;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Printed text of the top level type and interface declarations, keyed by node identity. Such
+ * declarations are typically shared by many slices: the cache lets each of them be printed once. It can
+ * be used by concurrent printers.
+ */
+class RenderCache {
+	private final Map< OLSyntaxNode, String > rendered = Collections.synchronizedMap( new IdentityHashMap<>() );
+	private final LongAdder hits = new LongAdder();
+
+	/**
+	 * Returns true if the top level declaration n is printed through the cache.
+	 */
+	boolean isCacheable( OLSyntaxNode n ) {
+		return n instanceof TypeDefinition || n instanceof InterfaceDefinition;
+	}
+
+	/**
+	 * Returns the text of the top level declaration n, printing it if this is the first request.
+	 */
+	String render( OLSyntaxNode n ) {
+		String text = rendered.get( n );
+		if( text != null ) {
+			hits.increment();
+		} else {
+			// Print outside of the lock, concurrent printers of the same node agree on the first text stored
+			JoliePrettyPrinter printer = new JoliePrettyPrinter();
+			n.accept( printer );
+			text = printer.toString();
+			String previous = rendered.putIfAbsent( n, text );
+			if( previous != null ) {
+				text = previous;
+			}
+		}
+		return text;
+	}
+
+	/**
+	 * Returns the number of declarations taken from the cache instead of being printed.
+	 */
+	long hits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Returns the number of declarations printed.
+	 */
+	int size() {
+		return rendered.size();
+	}
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright (C) 2021 Valentino Picotti
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+package joliex.slicer;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.Stream;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+
+import jolie.lang.parse.ast.Program;
+
+/**
+ * On-disk cache of the slices of a program. An entry is keyed by the program path, the interpreter
+ * arguments that affect parsing (include and package paths), the requested services and the slicing
+ * options. It records the {@link SourceFingerprint} of the program, the rendered code of each slice, the
+ * names of the declarations it contains and the local modules copied next to it, whose files are part of
+ * the fingerprint.
+ *
+ * An entry is valid as long as the source files have the hashes it records: in that case the slices are
+ * restored from the cache without parsing the program.
+ *
+ * Restoring and storing the same entry are serialized within the process. An entry is replaced by moving
+ * the old directory aside and the new one in its place, so that readers in other processes find either
+ * entry whole; a reader that loses a file of the old entry while the replacement happens sees a miss.
+ */
+class SliceCache {
+	private static final String INDEX_FILE = "index.json";
+	private static final String SOURCES_KEY = "sources";
+	private static final String SLICES_KEY = "slices";
+	private static final String MODULES_KEY = "modules";
+	/* Locks serializing the accesses to the entries, striped by entry directory */
+	private static final Object[] ENTRY_LOCKS = new Object[ 64 ];
+
+	static {
+		Arrays.setAll( ENTRY_LOCKS, i -> new Object() );
+	}
+
+	private final Path entryDirectory;
+	/* The local modules of each service restored by the last call to restore */
+	private final Map< String, SortedMap< String, Path > > restoredModules = new TreeMap<>();
+
+	SliceCache( Path cacheDirectory, Path programPath, Set< String > services, List< String > interpreterArgs,
+		boolean narrowInterfaces ) {
+		StringBuilder key = new StringBuilder( programPath.toAbsolutePath().normalize().toString() );
+		interpreterArgs.forEach( arg -> key.append( '\0' ).append( arg ) );
+		new TreeSet<>( services ).forEach( s -> key.append( '\0' ).append( s ) );
+		if( narrowInterfaces ) { // Keys of the default options are unchanged
+			key.append( "\0--narrow-interfaces" );
+		}
+		this.entryDirectory = cacheDirectory.resolve( SourceFingerprint.hash( key.toString() ) );
+	}
+
+	/**
+	 * Writes the cached slices to outputDirectory, if the cache entry is still valid.
+	 *
+	 * @return the services whose code changed in outputDirectory, or empty if the entry is missing or stale
+	 */
+	Optional< Set< String > > restore( Path outputDirectory ) throws IOException {
+		synchronized( entryLock() ) {
+			try {
+				return restoreEntry( outputDirectory );
+			} catch( NoSuchFileException e ) { // The entry has been replaced by another process
+				return Optional.empty();
+			}
+		}
+	}
+
+	private Optional< Set< String > > restoreEntry( Path outputDirectory ) throws IOException {
+		Path index = entryDirectory.resolve( INDEX_FILE );
+		if( !Files.exists( index ) ) {
+			return Optional.empty();
+		}
+		JSONObject json;
+		try( Reader reader = Files.newBufferedReader( index, StandardCharsets.UTF_8 ) ) {
+			Object parsed = JSONValue.parse( reader );
+			if( !(parsed instanceof JSONObject) ) {
+				return Optional.empty();
+			}
+			json = (JSONObject) parsed;
+		}
+		JSONObject sources = (JSONObject) json.get( SOURCES_KEY );
+		JSONObject slices = (JSONObject) json.get( SLICES_KEY );
+		JSONObject modules = (JSONObject) json.getOrDefault( MODULES_KEY, new JSONObject() );
+		if( sources == null || slices == null ) {
+			return Optional.empty();
+		}
+		Map< URI, String > hashes = new HashMap<>();
+		sources.forEach( ( source, hash ) -> hashes.put( URI.create( source.toString() ), hash.toString() ) );
+		if( !SourceFingerprint.of( hashes ).isCurrent() ) {
+			return Optional.empty();
+		}
+		Files.createDirectories( outputDirectory );
+		ArtifactWriter artifactWriter = new ArtifactWriter( outputDirectory );
+		Set< String > affectedServices = new TreeSet<>();
+		restoredModules.clear();
+		try {
+			for( Object service : slices.keySet() ) {
+				String serviceName = service.toString();
+				Path cached = entryDirectory.resolve( serviceName + ".ol" );
+				boolean written = artifactWriter.write( Slicer.serviceFile( outputDirectory, serviceName ), writer -> {
+					try( Reader reader = Files.newBufferedReader( cached, StandardCharsets.UTF_8 ) ) {
+						reader.transferTo( writer );
+					}
+				} );
+				JSONObject serviceModules = (JSONObject) modules.get( serviceName );
+				if( serviceModules != null ) {
+					SortedMap< String, Path > files = new TreeMap<>();
+					serviceModules.forEach( ( path, source ) ->
+						files.put( path.toString(), Paths.get( URI.create( source.toString() ) ) ) );
+					written |= Slicer.copyModules( Slicer.serviceDirectory( outputDirectory, serviceName ), files,
+						artifactWriter );
+					restoredModules.put( serviceName, files );
+				}
+				if( written ) {
+					affectedServices.add( serviceName );
+				}
+			}
+		} finally {
+			artifactWriter.save();
+		}
+		return Optional.of( affectedServices );
+	}
+
+	/**
+	 * Returns the local modules copied into the directory of each service by the last successful restore,
+	 * as {@link Slicer#getModules()}.
+	 */
+	Map< String, SortedMap< String, Path > > restoredModules() {
+		return Collections.unmodifiableMap( restoredModules );
+	}
+
+	/**
+	 * Stores the slices generated by slicer, together with the hashes of the sources of program. The entry
+	 * is prepared in a temporary directory and then moved in place, so that readers never see it partially
+	 * written. The slices are copied from the output directory of slicer and their declarations are those
+	 * recorded while emitting them, so that no slice is built again: the caller must keep other requests
+	 * from writing there until this returns.
+	 */
+	void store( Program program, Slicer slicer ) throws IOException {
+		synchronized( entryLock() ) {
+			storeEntry( program, slicer );
+		}
+	}
+
+	private void storeEntry( Program program, Slicer slicer ) throws IOException {
+		JSONObject sources = new JSONObject();
+		SourceFingerprint.of( program ).hashes()
+			.forEach( ( source, hash ) -> sources.put( source.toString(), hash ) );
+		JSONObject modules = new JSONObject();
+		for( Map.Entry< String, SortedMap< String, Path > > service : slicer.getModules().entrySet() ) {
+			JSONObject serviceModules = new JSONObject();
+			for( Map.Entry< String, Path > module : service.getValue().entrySet() ) {
+				URI source = module.getValue().toUri();
+				serviceModules.put( module.getKey(), source.toString() );
+				sources.put( source.toString(), SourceFingerprint.hash( module.getValue() ) );
+			}
+			modules.put( service.getKey(), serviceModules );
+		}
+		JSONObject slices = new JSONObject();
+		Path cacheDirectory = entryDirectory.getParent();
+		Files.createDirectories( cacheDirectory );
+		Path temporary = Files.createTempDirectory( cacheDirectory, entryDirectory.getFileName() + "." );
+		try {
+			for( String service : slicer.getSlicedServices() ) {
+				Files.copy( Slicer.serviceFile( slicer.outputDirectory, service ),
+					temporary.resolve( service + ".ol" ) );
+				JSONArray declarations = new JSONArray();
+				declarations.addAll( slicer.getDeclarations().getOrDefault( service, List.of() ) );
+				slices.put( service, declarations );
+			}
+			JSONObject index = new JSONObject();
+			index.put( SOURCES_KEY, sources );
+			index.put( SLICES_KEY, slices );
+			index.put( MODULES_KEY, modules );
+			Files.writeString( temporary.resolve( INDEX_FILE ), index.toJSONString(), StandardCharsets.UTF_8 );
+			// Move the old entry aside first: a directory cannot be atomically replaced by another one
+			Path previous = null;
+			if( Files.exists( entryDirectory ) ) {
+				previous = Files.createTempDirectory( cacheDirectory, entryDirectory.getFileName() + ".old." );
+				Files.move( entryDirectory, previous.resolve( entryDirectory.getFileName() ),
+					StandardCopyOption.ATOMIC_MOVE );
+			}
+			try {
+				Files.move( temporary, entryDirectory, StandardCopyOption.ATOMIC_MOVE );
+			} catch( FileAlreadyExistsException | DirectoryNotEmptyException e ) {
+				// Another process stored the same entry first
+			} finally {
+				if( previous != null ) {
+					deleteRecursively( previous );
+				}
+			}
+		} finally {
+			deleteRecursively( temporary );
+		}
+	}
+
+	private Object entryLock() {
+		return ENTRY_LOCKS[ Math.floorMod( entryDirectory.hashCode(), ENTRY_LOCKS.length ) ];
+	}
+
+	private static void deleteRecursively( Path directory ) throws IOException {
+		if( !Files.exists( directory ) ) {
+			return;
+		}
+		try( Stream< Path > paths = Files.walk( directory ) ) {
+			for( Path p : paths.sorted( Comparator.reverseOrder() ).toList() ) {
+				Files.deleteIfExists( p );
+			}
+		}
+	}
+}
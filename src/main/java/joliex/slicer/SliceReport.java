@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2021 Valentino Picotti
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+package joliex.slicer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+import jolie.lang.parse.ast.ImportStatement;
+import jolie.lang.parse.ast.InterfaceDefinition;
+import jolie.lang.parse.ast.OLSyntaxNode;
+
+/**
+ * Accounting of what the slices of a {@link Slicer} contain, to find out why they are large. For each
+ * slice it lists the included declarations and imports, each with the printed bytes it takes and the
+ * chain of declarations that pulled it in, starting from the service, and the local modules copied next
+ * to it (see {@link LocalModules}). It also reports the bytes that are duplicated across slices, and
+ * which shared declarations cause most of the duplication.
+ *
+ * Bytes are those of the declarations as printed in the slices (UTF-8), without the separating newlines:
+ * narrowed interfaces and import statements count only the operations and symbols each slice keeps, and
+ * chains follow only the dependencies of the kept operations.
+ */
+class SliceReport {
+	static final String REPORT_FILE = "slice-report.json";
+	/* Number of shared declarations listed in the report, the most duplicated first */
+	private static final int SHARED_DECLARATIONS = 20;
+
+	private final Slicer slicer;
+	private final DependenciesResolver resolver;
+	/* Printed bytes of each declaration, by id */
+	private final Map< Integer, Long > bytes = new HashMap<>();
+	private final JSONObject report = new JSONObject();
+	private long totalBytes = 0;
+	private long uniqueBytes = 0;
+
+	SliceReport( Slicer slicer ) {
+		this.slicer = slicer;
+		this.resolver = slicer.dependenciesResolver;
+		compute();
+	}
+
+	long totalBytes() {
+		return totalBytes;
+	}
+
+	/**
+	 * Returns the share of the bytes of all the slices that are copies of declarations in other slices.
+	 */
+	double duplicatedShare() {
+		return totalBytes == 0 ? 0 : 1 - (double) uniqueBytes / totalBytes;
+	}
+
+	void write( Path file ) throws IOException {
+		Files.createDirectories( file.toAbsolutePath().getParent() );
+		Files.writeString( file, report.toJSONString(), StandardCharsets.UTF_8 );
+	}
+
+	private void compute() {
+		final int size = resolver.declarations.size();
+		final Map< String, Slicer.Slice > slices = new TreeMap<>();
+		final int[] occurrences = new int[ size ];
+		/* Bytes of each declaration in all the slices and in the slice printing it largest */
+		final long[] printedBytes = new long[ size ];
+		final long[] largestBytes = new long[ size ];
+		slicer.slicedServices.forEach( ( name, service ) -> {
+			Slicer.Slice slice = slicer.slice( service );
+			slice.content.stream().forEach( id -> {
+				long bytes = bytes( id, slice );
+				occurrences[ id ]++;
+				printedBytes[ id ] += bytes;
+				largestBytes[ id ] = Math.max( largestBytes[ id ], bytes );
+			} );
+			slices.put( name, slice );
+		} );
+
+		JSONArray slicesJson = new JSONArray();
+		slices.forEach( ( name, slice ) -> {
+			BitSet content = slice.content;
+			int[] parents = parents( resolver.ids.get( slicer.slicedServices.get( name ) ), slice.narrowed );
+			JSONArray declarations = new JSONArray();
+			JSONArray imports = new JSONArray();
+			long sliceBytes = 0;
+			long duplicatedBytes = 0;
+			for( int id = content.nextSetBit( 0 ); id >= 0; id = content.nextSetBit( id + 1 ) ) {
+				OLSyntaxNode n = resolver.declarations.get( id );
+				long bytes = bytes( id, slice );
+				sliceBytes += bytes;
+				if( occurrences[ id ] > 1 ) {
+					duplicatedBytes += bytes;
+				}
+				JSONObject entry = new JSONObject();
+				entry.put( "name", SymbolTable.nameOf( n ) );
+				entry.put( "bytes", bytes );
+				entry.put( "slices", occurrences[ id ] );
+				entry.put( "chain", chain( parents, id ) );
+				(n instanceof ImportStatement ? imports : declarations).add( entry );
+			}
+			JSONObject sliceJson = new JSONObject();
+			sliceJson.put( "service", name );
+			sliceJson.put( "bytes", sliceBytes );
+			sliceJson.put( "duplicatedBytes", duplicatedBytes );
+			sliceJson.put( "declarations", declarations );
+			sliceJson.put( "imports", imports );
+			JSONArray modules = new JSONArray();
+			modules.addAll( slicer.getModules().getOrDefault( name, Collections.emptySortedMap() ).keySet() );
+			sliceJson.put( "modules", modules );
+			slicesJson.add( sliceJson );
+			totalBytes += sliceBytes;
+		} );
+
+		// A declaration printed differently by some slices (pruned) counts once with its largest text
+		List< Integer > shared = new ArrayList<>();
+		for( int id = 0; id < size; id++ ) {
+			uniqueBytes += largestBytes[ id ];
+			if( occurrences[ id ] > 1 ) {
+				shared.add( id );
+			}
+		}
+		shared.sort( Comparator.comparingLong( ( Integer id ) -> printedBytes[ id ] - largestBytes[ id ] ).reversed() );
+		JSONArray mostDuplicated = new JSONArray();
+		for( int id : shared.subList( 0, Math.min( SHARED_DECLARATIONS, shared.size() ) ) ) {
+			JSONObject entry = new JSONObject();
+			entry.put( "name", SymbolTable.nameOf( resolver.declarations.get( id ) ) );
+			entry.put( "slices", occurrences[ id ] );
+			entry.put( "bytes", largestBytes[ id ] );
+			entry.put( "duplicatedBytes", printedBytes[ id ] - largestBytes[ id ] );
+			mostDuplicated.add( entry );
+		}
+
+		report.put( "slices", slicesJson );
+		report.put( "totalBytes", totalBytes );
+		report.put( "uniqueBytes", uniqueBytes );
+		report.put( "duplicatedShare", duplicatedShare() );
+		report.put( "mostDuplicated", mostDuplicated );
+	}
+
+	/*
+	 * Breadth first visit of the dependency graph of a slice from the declaration with id root, with the
+	 * interfaces in narrowed depending only on the operations they keep: the parent of each reached
+	 * declaration is the one it has first been reached from, so that chains are shortest.
+	 */
+	private int[] parents( int root, Map< InterfaceDefinition, Set< String > > narrowed ) {
+		int[] parents = new int[ resolver.declarations.size() ];
+		Arrays.fill( parents, -1 );
+		parents[ root ] = root;
+		Deque< Integer > queue = new ArrayDeque<>();
+		queue.add( root );
+		while( !queue.isEmpty() ) {
+			int id = queue.poll();
+			for( int successor : resolver.edges( id, narrowed ) ) {
+				if( parents[ successor ] < 0 ) {
+					parents[ successor ] = id;
+					queue.add( successor );
+				}
+			}
+		}
+		return parents;
+	}
+
+	private JSONArray chain( int[] parents, int id ) {
+		Deque< String > names = new ArrayDeque<>();
+		int current = id;
+		while( parents[ current ] != current ) {
+			names.push( SymbolTable.nameOf( resolver.declarations.get( current ) ) );
+			current = parents[ current ];
+		}
+		names.push( SymbolTable.nameOf( resolver.declarations.get( current ) ) );
+		JSONArray chain = new JSONArray();
+		chain.addAll( names );
+		return chain;
+	}
+
+	/*
+	 * Returns the bytes of the declaration with the given id as printed in slice. The declarations that the
+	 * slice prunes are printed each time, the others once for all the slices.
+	 */
+	private long bytes( int id, Slicer.Slice slice ) {
+		OLSyntaxNode n = resolver.declarations.get( id );
+		if( slice.prunedDeclarations.containsKey( n ) ) {
+			return printedBytes( n, slice.prunedDeclarations );
+		}
+		return bytes.computeIfAbsent( id, i -> printedBytes( n, Collections.emptyMap() ) );
+	}
+
+	private long printedBytes( OLSyntaxNode n, Map< OLSyntaxNode, Set< String > > prunedDeclarations ) {
+		String text;
+		if( prunedDeclarations.isEmpty() && slicer.renderCache.isCacheable( n ) ) {
+			text = slicer.renderCache.render( n );
+		} else {
+			JoliePrettyPrinter printer =
+				new JoliePrettyPrinter( new StringBuilder(), null, slicer.view, prunedDeclarations );
+			n.accept( printer );
+			text = printer.toString();
+		}
+		return text.getBytes( StandardCharsets.UTF_8 ).length;
+	}
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2021 Valentino Picotti
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+package joliex.slicer;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import jolie.runtime.Value;
+
+/**
+ * Statistics of a slicing request: the wall and CPU time of each phase, counters (e.g. nodes visited by
+ * the dependency resolver and memo hits) and the bytes written and the time spent emitting each service.
+ *
+ * The CPU time of a phase is the CPU time of the whole process while the phase runs, so that the work of
+ * parallel phases is accounted for. Other requests served at the same time inflate it.
+ * Statistics can be recorded concurrently.
+ */
+class SliceStats {
+	private static final String PHASES_CHILD = "phases";
+	private static final String COUNTERS_CHILD = "counters";
+	private static final String SERVICES_CHILD = "services";
+	private static final String NAME_CHILD = "name";
+	private static final String VALUE_CHILD = "value";
+	private static final String WALL_MILLIS_CHILD = "wallMillis";
+	private static final String CPU_MILLIS_CHILD = "cpuMillis";
+	private static final String BYTES_CHILD = "bytes";
+	private static final String EMIT_MILLIS_CHILD = "emitMillis";
+
+	/**
+	 * Measures a run of a phase, from its creation to its closing.
+	 */
+	final class Timer implements AutoCloseable {
+		private final String phase;
+		private final long cpuStart = processCpuTime();
+		private final long start = System.nanoTime();
+
+		private Timer( String phase ) {
+			this.phase = phase;
+		}
+
+		@Override
+		public void close() {
+			final long wall = System.nanoTime() - start;
+			final long cpu = processCpuTime() - cpuStart;
+			synchronized( SliceStats.this ) {
+				Time time = phases.computeIfAbsent( phase, k -> new Time() );
+				time.wallNanos += wall;
+				time.cpuNanos += cpu;
+			}
+		}
+	}
+
+	private static final class Time {
+		private long wallNanos = 0;
+		private long cpuNanos = 0;
+	}
+
+	private static final class ServiceStats {
+		private long bytes = 0;
+		private long emitNanos = 0;
+	}
+
+	private final Map< String, Time > phases = new LinkedHashMap<>();
+	private final Map< String, Long > counters = new LinkedHashMap<>();
+	private final SortedMap< String, ServiceStats > services = new TreeMap<>();
+
+	/**
+	 * Starts timing a run of the phase with the given name; its wall and CPU time are added to those of
+	 * the phase when the returned timer is closed.
+	 */
+	Timer time( String phase ) {
+		return new Timer( phase );
+	}
+
+	synchronized void count( String counter, long n ) {
+		counters.merge( counter, n, Long::sum );
+	}
+
+	/**
+	 * Records that bytes have been emitted for service, taking emitNanos. Services with the same name in
+	 * different targets are summed.
+	 */
+	synchronized void service( String service, long bytes, long emitNanos ) {
+		ServiceStats stats = services.computeIfAbsent( service, k -> new ServiceStats() );
+		stats.bytes += bytes;
+		stats.emitNanos += emitNanos;
+	}
+
+	synchronized Value toValue() {
+		Value value = Value.create();
+		phases.forEach( ( name, time ) -> {
+			Value phase = value.getNewChild( PHASES_CHILD );
+			phase.setFirstChild( NAME_CHILD, name );
+			phase.setFirstChild( WALL_MILLIS_CHILD, millis( time.wallNanos ) );
+			phase.setFirstChild( CPU_MILLIS_CHILD, millis( time.cpuNanos ) );
+		} );
+		counters.forEach( ( name, n ) -> {
+			Value counter = value.getNewChild( COUNTERS_CHILD );
+			counter.setFirstChild( NAME_CHILD, name );
+			counter.setFirstChild( VALUE_CHILD, n );
+		} );
+		services.forEach( ( name, stats ) -> {
+			Value service = value.getNewChild( SERVICES_CHILD );
+			service.setFirstChild( NAME_CHILD, name );
+			service.setFirstChild( BYTES_CHILD, stats.bytes );
+			service.setFirstChild( EMIT_MILLIS_CHILD, millis( stats.emitNanos ) );
+		} );
+		return value;
+	}
+
+	private static double millis( long nanos ) {
+		return nanos / 1_000_000.0;
+	}
+
+	private static long processCpuTime() {
+		OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+		if( os instanceof com.sun.management.OperatingSystemMXBean ) {
+			return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+		}
+		return 0;
+	}
+}
@@ -20,22 +20,26 @@
 
 package joliex.slicer;
 
-import static java.nio.file.StandardOpenOption.CREATE;
-import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
-import static java.nio.file.StandardOpenOption.WRITE;
-
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.stream.Collectors;
 
 import org.json.simple.JSONObject;
 import org.json.simple.JSONValue;
 
-import jolie.lang.parse.ast.EmbedServiceNode;
+import jolie.lang.parse.ast.ImportStatement;
+import jolie.lang.parse.ast.InterfaceDefinition;
 import jolie.lang.parse.ast.OLSyntaxNode;
 import jolie.lang.parse.ast.Program;
 import jolie.lang.parse.ast.ServiceNode;
@@ -46,24 +50,48 @@ import org.json.simple.parser.ParseException;
  */
 public class Slicer {
 	final Program program;
+	final ProgramView view;
 	final Path outputDirectory;
 	final Set<String> services;
 	final DependenciesResolver dependenciesResolver;
-	Map< String, Program > slices = null;
+	final RenderCache renderCache;
+	final LocalModules localModules;
+	final SliceStats stats;
+	/* Whether the interfaces of the output ports are narrowed to the operations the services invoke */
+	final boolean narrowInterfaces;
+	final Set< String > affectedServices = new ConcurrentSkipListSet<>();
+	/* The local modules copied into the directory of each service, by path relative to it */
+	final Map< String, SortedMap< String, Path > > modules = new ConcurrentSkipListMap<>();
+	/* The names of the declarations of each slice emitted */
+	final Map< String, List< String > > declarations = new ConcurrentSkipListMap<>();
+	/* The services to slice, by name. Their slices are built on demand and not retained */
+	SortedMap< String, ServiceNode > slicedServices = null;
 
 	private Slicer( Program p, Path outputDirectory, Set<String> services )
 		throws FileNotFoundException, InvalidConfigurationFileException {
-		this.program = p;
+		this( new ProgramView( p ), null, new RenderCache(), new LocalModules( p ), new SliceStats(), false,
+			outputDirectory, services );
+	}
+
+	private Slicer( ProgramView view, DependenciesResolver dependenciesResolver, RenderCache renderCache,
+		LocalModules localModules, SliceStats stats, boolean narrowInterfaces, Path outputDirectory,
+		Set<String> services ) {
+		this.stats = stats;
+		this.narrowInterfaces = narrowInterfaces;
+		this.program = view.program();
+		this.view = view;
+		this.dependenciesResolver =
+			dependenciesResolver == null ? new DependenciesResolver( view ) : dependenciesResolver;
+		this.renderCache = renderCache;
+		this.localModules = localModules;
 		this.outputDirectory = outputDirectory;
 		this.services = services;
-		p.children()
-			.stream()
-			.filter( ServiceNode.class::isInstance )
-			.map( ServiceNode.class::cast )
-			.forEach( Slicer::removeAutogeneratedInputPorts );
-		this.dependenciesResolver = new DependenciesResolver( p );
 	}
 
+	/**
+	 * Slices p through a {@link ProgramView}. Slicing only reads p, so the same program can be sliced
+	 * any number of times, also by concurrent requests.
+	 */
 	public static Slicer create( Program p, Path outputDirectory, Set<String> services )
 		throws FileNotFoundException, InvalidConfigurationFileException {
 		Slicer slicer = new Slicer( p, outputDirectory, services );
@@ -71,6 +99,76 @@ public class Slicer {
 		return slicer;
 	}
 
+	/**
+	 * Slices p once for each output directory in targets, with the services it is mapped to. The
+	 * dependencies are resolved once and the slicers share the printed text of common declarations and the
+	 * imports read from the local modules.
+	 *
+	 * @return the slicers, in the iteration order of targets
+	 */
+	public static Map< Path, Slicer > create( Program p, Map< Path, Set< String > > targets ) {
+		return create( p, targets, new SliceStats() );
+	}
+
+	/**
+	 * As {@link #create(Program, Map)}, recording the resolution and the emission of the slices in stats.
+	 */
+	static Map< Path, Slicer > create( Program p, Map< Path, Set< String > > targets, SliceStats stats ) {
+		return create( p, targets, stats, false );
+	}
+
+	/**
+	 * As {@link #create(Program, Map, SliceStats)}. If narrowInterfaces is true, the slices declare only
+	 * the operations that their services invoke of the interfaces they use as clients (see
+	 * {@link InterfaceNarrowing}), and only the types these operations need.
+	 */
+	static Map< Path, Slicer > create( Program p, Map< Path, Set< String > > targets, SliceStats stats,
+		boolean narrowInterfaces ) {
+		return create( p, targets, stats, narrowInterfaces, List.of() );
+	}
+
+	/**
+	 * As {@link #create(Program, Map, SliceStats, boolean)}, for a program parsed with parserArguments:
+	 * the local modules are looked up and parsed with the same arguments (see {@link LocalModules}).
+	 */
+	static Map< Path, Slicer > create( Program p, Map< Path, Set< String > > targets, SliceStats stats,
+		boolean narrowInterfaces, List< String > parserArguments ) {
+		checkOutputDirectories( targets.keySet() );
+		final ProgramView view = new ProgramView( p );
+		final DependenciesResolver dependenciesResolver;
+		try( SliceStats.Timer timer = stats.time( "resolve" ) ) {
+			dependenciesResolver = new DependenciesResolver( view );
+		}
+		stats.count( "nodesVisited", dependenciesResolver.nodesVisited() );
+		stats.count( "memoHits", dependenciesResolver.memoHits() );
+		stats.count( "deadDefinitions", view.deadDefinitions() );
+		final RenderCache renderCache = new RenderCache();
+		final LocalModules localModules = new LocalModules( p, parserArguments );
+		Map< Path, Slicer > slicers = new LinkedHashMap<>();
+		targets.forEach( ( outputDirectory, services ) -> {
+			Slicer slicer =
+				new Slicer( view, dependenciesResolver, renderCache, localModules, stats, narrowInterfaces,
+					outputDirectory, services );
+			slicer.sliceProgram();
+			slicers.put( outputDirectory, slicer );
+		} );
+		return slicers;
+	}
+
+	/**
+	 * Throws IllegalArgumentException if two of the output directories are the same directory once
+	 * normalized, since their slices would overwrite each other.
+	 */
+	static void checkOutputDirectories( Collection< Path > outputDirectories ) {
+		Set< Path > normalized = new HashSet<>();
+		for( Path outputDirectory : outputDirectories ) {
+			if( !normalized.add( outputDirectory.toAbsolutePath().normalize() ) ) {
+				throw new IllegalArgumentException( "Output directory " + outputDirectory
+					+ " is the target of more than one configuration" );
+			}
+		}
+	}
+
 	public void validateConfigurationFile( Map< String, ServiceNode > declaredServices )
 		throws InvalidConfigurationFileException {
 		final StringBuilder msg = new StringBuilder();
@@ -106,57 +204,239 @@ public class Slicer {
 
 	private void sliceProgram() {
 		/* Slices only the services mentioned in the config */
-		slices = new HashMap<>();
+		slicedServices = new TreeMap<>();
 		program.children()
 			.stream()
 			.filter( ServiceNode.class::isInstance )
 			.map( ServiceNode.class::cast )
 			// Slice only services that are present in the configuration
 			.filter( s -> services.contains( s.name() ) )
-			.forEach( s -> {
-				// Sort dependencies by their line to preserve the ordering given by the programmer
-				List< OLSyntaxNode > newProgram =
-					dependenciesResolver.getServiceDependencies( s )
-						.stream()
-						.sorted( Comparator.<OLSyntaxNode, Integer>comparing( dep -> dep.context().startLine() ) )
-						.collect( Collectors.toList() );
-				newProgram.add( s );
-				slices.put( s.name(), new Program( program.context(), newProgram ) );
-			} );
-	}
-
-	private static void removeAutogeneratedInputPorts( ServiceNode service ) {
-		ArrayList< OLSyntaxNode > toBeRemoved = service.program()
-			.children()
-			.stream()
-			.filter( EmbedServiceNode.class::isInstance )
-			.map( EmbedServiceNode.class::cast )
-			.filter( EmbedServiceNode::isNewPort )
-			.map( EmbedServiceNode::bindingPort )
-			.collect( ArrayList::new, ArrayList::add, ArrayList::addAll );
-		service.program().children().removeAll( toBeRemoved );
+			.forEach( s -> slicedServices.put( s.name(), s ) );
+	}
+
+	/**
+	 * Returns the interfaces to narrow in the slice of the service s, each with the operations to keep:
+	 * none unless narrowInterfaces is set.
+	 */
+	Map< InterfaceDefinition, Set< String > > narrowing( ServiceNode s ) {
+		return narrowInterfaces ? InterfaceNarrowing.of( s, dependenciesResolver ) : Collections.emptyMap();
+	}
+
+	/**
+	 * The slice of a service: its program, the declarations of the program that are printed with only
+	 * some of their members, by name (see {@link JoliePrettyPrinter}), and its import statements. It also
+	 * keeps the ids of its declarations, the service included, and the interfaces it narrows.
+	 */
+	static final class Slice {
+		final Program program;
+		final Map< OLSyntaxNode, Set< String > > prunedDeclarations;
+		final Set< ImportStatement > imports;
+		final BitSet content;
+		final Map< InterfaceDefinition, Set< String > > narrowed;
+
+		private Slice( Program program, Map< OLSyntaxNode, Set< String > > prunedDeclarations,
+			Set< ImportStatement > imports, BitSet content, Map< InterfaceDefinition, Set< String > > narrowed ) {
+			this.program = program;
+			this.prunedDeclarations = prunedDeclarations;
+			this.imports = imports;
+			this.content = content;
+			this.narrowed = narrowed;
+		}
+	}
+
+	/**
+	 * Builds the slice of the service s: its dependencies followed by s. The dependencies of the narrowed
+	 * interfaces are only those of the operations they keep. Import statements keep only the symbols that
+	 * the slice refers to.
+	 */
+	Slice slice( ServiceNode s ) {
+		final Map< InterfaceDefinition, Set< String > > narrowed = narrowing( s );
+		final BitSet dependencies = dependenciesResolver.getServiceDependencyIds( s, narrowed );
+		// Sort dependencies by their line to preserve the ordering given by the programmer
+		List< OLSyntaxNode > newProgram =
+			dependencies
+				.stream()
+				.mapToObj( dependenciesResolver.declarations::get )
+				// A service is part of its own dependencies only if it embeds itself
+				.filter( dep -> dep != s )
+				.sorted( Comparator.<OLSyntaxNode, Integer>comparing( dep -> dep.context().startLine() ) )
+				.collect( Collectors.toList() );
+		newProgram.add( s );
+		final BitSet content = (BitSet) dependencies.clone();
+		content.set( dependenciesResolver.ids.get( s ) );
+		final Map< ImportStatement, Set< String > > importedSymbols =
+			dependenciesResolver.getImportedSymbols( content, narrowed );
+		final Map< OLSyntaxNode, Set< String > > prunedDeclarations = new IdentityHashMap<>( narrowed );
+		prunedDeclarations.putAll( importedSymbols );
+		return new Slice( new Program( program.context(), newProgram ), prunedDeclarations,
+			importedSymbols.keySet(), content, narrowed );
 	}
 
 	public void generateServiceDirectories()
 		throws IOException {
+		generateServiceDirectories( Runtime.getRuntime().availableProcessors() );
+	}
+
+	/**
+	 * Prints and writes the slices concurrently, one virtual thread per slice and at most parallelism
+	 * slices at a time. Every slice is attempted: if some of them fail, the thrown exception carries the
+	 * failure of each service as a suppressed exception, ordered by service name.
+	 *
+	 * The slices are streamed: each one is built by its task, printed to its file and released, and a
+	 * task is started only when a permit is free. Only parallelism slices are alive at any time, so the
+	 * memory needed does not grow with the number of services.
+	 *
+	 * @throws IllegalArgumentException if parallelism is less than 1
+	 */
+	public void generateServiceDirectories( int parallelism )
+		throws IOException {
+		if( parallelism < 1 ) { // No permit would ever be free
+			throw new IllegalArgumentException( "Parallelism must be at least 1, got " + parallelism );
+		}
 		Files.createDirectories( outputDirectory );
-		for( Map.Entry< String, Program > service : slices.entrySet() ) {
-			JoliePrettyPrinter pp = new JoliePrettyPrinter();
-			// Create Service Directory
-			Path serviceDir = outputDirectory.resolve( service.getKey().toLowerCase() );
-			Files.createDirectories( serviceDir );
-			// Output Jolie
-			Path jolieFilePath = serviceDir.resolve( service.getKey() + ".ol" );
-			try( OutputStream os =
-				Files.newOutputStream( jolieFilePath, CREATE, TRUNCATE_EXISTING, WRITE ) ) {
-				pp.visit( service.getValue() );
-				os.write( pp.toString().getBytes() );
-				os.flush();
+		final ArtifactWriter artifactWriter = new ArtifactWriter( outputDirectory );
+		final Semaphore permits = new Semaphore( parallelism );
+		final SortedMap< String, Future< Void > > results = new TreeMap<>();
+		final long renderCacheHits = renderCache.hits();
+		try( ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor() ) {
+			for( Map.Entry< String, ServiceNode > service : slicedServices.entrySet() ) {
+				permits.acquire();
+				results.put( service.getKey(), executor.submit( () -> {
+					try {
+						generateServiceDirectory( service.getKey(), slice( service.getValue() ), artifactWriter );
+					} finally {
+						permits.release();
+					}
+					return null;
+				} ) );
+			}
+		} catch( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException( "Interrupted while generating service directories" );
+		} finally {
+			artifactWriter.save();
+			stats.count( "renderCacheHits", renderCache.hits() - renderCacheHits );
+		}
+		List< IOException > failures = new ArrayList<>();
+		for( Map.Entry< String, Future< Void > > result : results.entrySet() ) {
+			try {
+				result.getValue().get();
+			} catch( ExecutionException e ) {
+				failures.add( new IOException( "Service " + result.getKey() + ": " + e.getCause().getMessage(),
+					e.getCause() ) );
+			} catch( InterruptedException e ) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException( "Interrupted while generating service directories" );
 			}
 		}
+		if( !failures.isEmpty() ) {
+			IOException e = new IOException( "Could not generate the directories of " + failures.size()
+				+ " service(s): " + failures.stream().map( Throwable::getMessage )
+					.collect( Collectors.joining( "; " ) ) );
+			failures.forEach( e::addSuppressed );
+			throw e;
+		}
+	}
+
+	private void generateServiceDirectory( String serviceName, Slice slice, ArtifactWriter artifactWriter )
+		throws IOException {
+		// Output Jolie, streaming the printed code through a UTF-8 encoder. The file is replaced only if
+		// its content changed since the previous run. The service directory is created by the writer.
+		Path jolieFilePath = serviceFile( outputDirectory, serviceName );
+		long start = System.nanoTime();
+		boolean written = artifactWriter.write( jolieFilePath,
+			writer -> new JoliePrettyPrinter( writer, renderCache, view, slice.prunedDeclarations )
+				.visit( slice.program ) );
+		stats.service( serviceName, artifactWriter.size( jolieFilePath ), System.nanoTime() - start );
+		declarations.put( serviceName, slice.program.children().stream().map( SymbolTable::nameOf ).toList() );
+		// Copy the local modules the slice imports, at the same path relative to the slice
+		SortedMap< String, Path > sliceModules = localModules.of( slice.imports );
+		if( !sliceModules.isEmpty() ) {
+			written |= copyModules( serviceDirectory( outputDirectory, serviceName ), sliceModules, artifactWriter );
+			modules.put( serviceName, sliceModules );
+		}
+		if( written ) {
+			affectedServices.add( serviceName );
+		}
+	}
+
+	/**
+	 * Copies the module files into serviceDirectory, each at its relative path, unless it already has the
+	 * same content. The bytes are copied unchanged, whatever the charset of the module.
+	 *
+	 * @return true if some module has been (re)written
+	 */
+	static boolean copyModules( Path serviceDirectory, Map< String, Path > modules, ArtifactWriter artifactWriter )
+		throws IOException {
+		boolean written = false;
+		for( Map.Entry< String, Path > module : modules.entrySet() ) {
+			written |= artifactWriter.copy( serviceDirectory.resolve( module.getKey() ), module.getValue() );
+		}
+		return written;
+	}
+
+	/**
+	 * Returns the directory of the slice of serviceName.
+	 */
+	static Path serviceDirectory( Path outputDirectory, String serviceName ) {
+		return outputDirectory.resolve( serviceName.toLowerCase() );
+	}
+
+	/**
+	 * Returns the path of the Jolie file of the slice of serviceName.
+	 */
+	static Path serviceFile( Path outputDirectory, String serviceName ) {
+		return serviceDirectory( outputDirectory, serviceName ).resolve( serviceName + ".ol" );
+	}
+
+	/**
+	 * Returns the services whose code changed in the last call to generateServiceDirectories.
+	 */
+	public Set< String > getAffectedServices() {
+		return Collections.unmodifiableSet( affectedServices );
+	}
+
+	/**
+	 * Returns the local modules copied into the directory of each service by the last call to
+	 * generateServiceDirectories, by path relative to it. Services that import no local module are absent.
+	 */
+	public Map< String, SortedMap< String, Path > > getModules() {
+		return Collections.unmodifiableMap( modules );
+	}
+
+	/**
+	 * Returns the names of the declarations of the slice of each service emitted by the last call to
+	 * generateServiceDirectories (see {@link SymbolTable#nameOf(OLSyntaxNode)}), in the order they are printed.
+	 */
+	Map< String, List< String > > getDeclarations() {
+		return Collections.unmodifiableMap( declarations );
+	}
+
+	/**
+	 * Returns the names of the sliced services.
+	 */
+	public Set< String > getSlicedServices() {
+		return Collections.unmodifiableSet( slicedServices.keySet() );
+	}
+
+	/**
+	 * Returns the slice of serviceName, built anew at each call. Its declarations are whole: the generated
+	 * files also prune the symbols of its imports and the operations of its narrowed interfaces.
+	 */
+	public Program getSlice( String serviceName ) {
+		ServiceNode s = slicedServices.get( serviceName );
+		if( s == null ) {
+			throw new NoSuchElementException( "Service " + serviceName + " is not sliced" );
+		}
+		return slice( s ).program;
 	}
 
+	/**
+	 * Returns all the slices. Unlike {@link #getSlice(String)}, it keeps every slice in memory.
+	 */
 	public Map< String, Program > getSlices() {
+		Map< String, Program > slices = new TreeMap<>();
+		slicedServices.forEach( ( name, s ) -> slices.put( name, slice( s ).program ) );
 		return slices;
 	}
 }
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2021 Valentino Picotti
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+package joliex.slicer;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder events of the stages of slicing, shown under "Jolie / Slicer" when a run is
+ * recorded (e.g. with -XX:StartFlightRecording). An event is begun and ended around its stage and its
+ * attributes are set only if {@link Event#shouldCommit()}: when no recording is active the events cost
+ * next to nothing.
+ */
+final class SlicerEvents {
+	private SlicerEvents() {}
+
+	@Name( "joliex.slicer.Parse" )
+	@Label( "Parse" )
+	@Category( { "Jolie", "Slicer" } )
+	@Description( "Parsing and semantic verification of a program (ParsingUtils performs both)" )
+	static final class Parse extends Event {
+		@Label( "Program" )
+		String program;
+
+		@Label( "Declarations" )
+		int declarations;
+	}
+
+	@Name( "joliex.slicer.Resolve" )
+	@Label( "Resolve" )
+	@Category( { "Jolie", "Slicer" } )
+	@Description( "Computation of the dependency graph of a program and of its transitive closures" )
+	static final class Resolve extends Event {
+		@Label( "Declarations" )
+		int declarations;
+
+		@Label( "Nodes Visited" )
+		long nodesVisited;
+	}
+
+	@Name( "joliex.slicer.ResolveService" )
+	@Label( "Resolve Service" )
+	@Category( { "Jolie", "Slicer" } )
+	@Description( "Lookup of the dependencies of a service" )
+	static final class ResolveService extends Event {
+		@Label( "Service" )
+		String service;
+
+		@Label( "Dependencies" )
+		int dependencies;
+	}
+
+	@Name( "joliex.slicer.PrintService" )
+	@Label( "Print Service" )
+	@Category( { "Jolie", "Slicer" } )
+	@Description( "Pretty printing of a service" )
+	static final class PrintService extends Event {
+		@Label( "Service" )
+		String service;
+
+		@Label( "Declarations" )
+		int declarations;
+
+		@Label( "Size" )
+		@Description( "Length of the printed code in UTF-8" )
+		@DataAmount
+		long bytes;
+	}
+
+	@Name( "joliex.slicer.WriteFile" )
+	@Label( "Write File" )
+	@Category( { "Jolie", "Slicer" } )
+	@Description( "Generation of an artifact, including the printing streamed into it" )
+	static final class WriteFile extends Event {
+		@Label( "Path" )
+		String path;
+
+		@Label( "Size" )
+		@DataAmount
+		long bytes;
+
+		@Label( "Written" )
+		@Description( "False if the file already had the same content" )
+		boolean written;
+	}
+}
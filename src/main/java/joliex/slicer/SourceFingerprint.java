@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2021 Valentino Picotti
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+package joliex.slicer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+import jolie.lang.parse.ast.OLSyntaxNode;
+import jolie.lang.parse.ast.Program;
+import jolie.lang.parse.ast.ServiceNode;
+
+/**
+ * The SHA-256 hashes of the files a program has been parsed from: the program itself and the files it
+ * includes, as recorded in the parsing contexts of its top level declarations and of the declarations of
+ * its services. Sources that are not regular files (e.g. modules of the standard library in a jar) are
+ * ignored.
+ */
+class SourceFingerprint {
+	private final SortedMap< URI, String > hashes;
+
+	private SourceFingerprint( SortedMap< URI, String > hashes ) {
+		this.hashes = hashes;
+	}
+
+	static SourceFingerprint of( Program program ) throws IOException {
+		Set< URI > sources = new TreeSet<>();
+		List< OLSyntaxNode > nodes = new ArrayList<>( program.children() );
+		program.children().stream()
+			.filter( ServiceNode.class::isInstance )
+			.map( ServiceNode.class::cast )
+			.forEach( s -> nodes.addAll( s.program().children() ) );
+		nodes.add( program );
+		for( OLSyntaxNode n : nodes ) {
+			URI source = n.context().source();
+			if( source != null && "file".equals( source.getScheme() ) ) {
+				sources.add( source );
+			}
+		}
+		SortedMap< URI, String > hashes = new TreeMap<>();
+		for( URI source : sources ) {
+			hashes.put( source, hash( Paths.get( source ) ) );
+		}
+		return new SourceFingerprint( hashes );
+	}
+
+	static SourceFingerprint of( Map< URI, String > hashes ) {
+		return new SourceFingerprint( new TreeMap<>( hashes ) );
+	}
+
+	Map< URI, String > hashes() {
+		return Collections.unmodifiableMap( hashes );
+	}
+
+	/**
+	 * Returns true if every source still exists and has the recorded hash.
+	 */
+	boolean isCurrent() throws IOException {
+		for( Map.Entry< URI, String > source : hashes.entrySet() ) {
+			Path path = Paths.get( source.getKey() );
+			if( !Files.exists( path ) || !hash( path ).equals( source.getValue() ) ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	static String hash( Path file ) throws IOException {
+		MessageDigest digest = newDigest();
+		try( InputStream is = new DigestInputStream( Files.newInputStream( file ), digest ) ) {
+			is.transferTo( OutputStream.nullOutputStream() );
+		}
+		return HexFormat.of().formatHex( digest.digest() );
+	}
+
+	static String hash( String s ) {
+		return HexFormat.of().formatHex( newDigest().digest( s.getBytes( StandardCharsets.UTF_8 ) ) );
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance( "SHA-256" );
+		} catch( NoSuchAlgorithmException e ) {
+			throw new IllegalStateException( e );
+		}
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2021 Valentino Picotti
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+package joliex.slicer;
+
+import jolie.lang.parse.ast.ImportStatement;
+import jolie.lang.parse.ast.ImportSymbolTarget;
+import jolie.lang.parse.ast.InterfaceDefinition;
+import jolie.lang.parse.ast.OLSyntaxNode;
+import jolie.lang.parse.ast.Program;
+import jolie.lang.parse.ast.ServiceNode;
+import jolie.lang.parse.ast.types.TypeDefinition;
+
+import java.util.*;
+
+/**
+ * Index of the top level declarations of a program and of its imported symbols.
+ * It is built once for a program and gives constant time lookups by kind and name.
+ */
+class SymbolTable {
+	private final Set< OLSyntaxNode > declarations = Collections.newSetFromMap( new IdentityHashMap<>() );
+	private final Map< String, TypeDefinition > types = new HashMap<>();
+	private final Map< String, InterfaceDefinition > interfaces = new HashMap<>();
+	private final Map< String, ServiceNode > services = new HashMap<>();
+	private final Map< String, ImportStatement > imports = new HashMap<>();
+
+	SymbolTable( Program program ) {
+		for( OLSyntaxNode n : program.children() ) {
+			if( n instanceof ImportStatement ) {
+				ImportStatement is = (ImportStatement) n;
+				for( ImportSymbolTarget ist : is.importSymbolTargets() ) {
+					imports.put( ist.localSymbolName(), is );
+				}
+			} else {
+				declarations.add( n );
+				if( n instanceof TypeDefinition ) {
+					types.put( ((TypeDefinition) n).name(), (TypeDefinition) n );
+				} else if( n instanceof InterfaceDefinition ) {
+					interfaces.put( ((InterfaceDefinition) n).name(), (InterfaceDefinition) n );
+				} else if( n instanceof ServiceNode ) {
+					services.put( ((ServiceNode) n).name(), (ServiceNode) n );
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns true if n is a top level declaration of the program (import statements excluded).
+	 */
+	boolean isDeclaration( OLSyntaxNode n ) {
+		return declarations.contains( n );
+	}
+
+	Set< OLSyntaxNode > declarations() {
+		return Collections.unmodifiableSet( declarations );
+	}
+
+	Optional< TypeDefinition > type( String name ) {
+		return Optional.ofNullable( types.get( name ) );
+	}
+
+	Optional< InterfaceDefinition > interfaceDefinition( String name ) {
+		return Optional.ofNullable( interfaces.get( name ) );
+	}
+
+	Optional< ServiceNode > service( String name ) {
+		return Optional.ofNullable( services.get( name ) );
+	}
+
+	/**
+	 * Returns a human readable name for the top level declaration n.
+	 */
+	static String nameOf( OLSyntaxNode n ) {
+		if( n instanceof TypeDefinition ) {
+			return "type " + ((TypeDefinition) n).name();
+		} else if( n instanceof InterfaceDefinition ) {
+			return "interface " + ((InterfaceDefinition) n).name();
+		} else if( n instanceof ServiceNode ) {
+			return "service " + ((ServiceNode) n).name();
+		} else if( n instanceof ImportStatement ) {
+			return "from " + ((ImportStatement) n).prettyPrintTarget();
+		}
+		return n.getClass().getSimpleName() + " at line " + n.context().startLine();
+	}
+
+	/**
+	 * Returns the import statement that brings the symbol localName in scope, if any.
+	 */
+	Optional< ImportStatement > importOf( String localName ) {
+		return Optional.ofNullable( imports.get( localName ) );
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2021 Valentino Picotti
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+package joliex.slicer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * A run that produces the same artifacts as the previous one writes nothing, a changed or missing
+ * artifact is written again.
+ */
+class ArtifactWriterTest {
+	/* Set on the files of the first run, so that a rewrite is seen whatever the timestamp resolution */
+	private static final FileTime FIRST_RUN = FileTime.from( Instant.parse( "2021-01-01T00:00:00Z" ) );
+
+	@TempDir
+	Path outputDirectory;
+	private Path config;
+	private Path slice;
+
+	@BeforeEach
+	void firstRun() throws Exception {
+		config = outputDirectory.resolve( "a/config.json" );
+		slice = outputDirectory.resolve( "a/A.ol" );
+		ArtifactWriter writer = new ArtifactWriter( outputDirectory );
+		assertTrue( writer.write( config, "{}" ) );
+		assertTrue( writer.write( slice, "service A {}" ) );
+		writer.save();
+		Files.setLastModifiedTime( config, FIRST_RUN );
+		Files.setLastModifiedTime( slice, FIRST_RUN );
+	}
+
+	@Test
+	void unchangedArtifactsAreNotWritten() throws Exception {
+		ArtifactWriter writer = new ArtifactWriter( outputDirectory );
+		assertFalse( writer.write( config, "{}" ) );
+		assertFalse( writer.write( slice, "service A {}" ) );
+		writer.save();
+		assertEquals( FIRST_RUN, Files.getLastModifiedTime( config ) );
+		assertEquals( FIRST_RUN, Files.getLastModifiedTime( slice ) );
+	}
+
+	@Test
+	void changedArtifactIsWritten() throws Exception {
+		ArtifactWriter writer = new ArtifactWriter( outputDirectory );
+		assertFalse( writer.write( config, "{}" ) );
+		assertTrue( writer.write( slice, "service A { main { nullProcess } }" ) );
+		writer.save();
+		assertEquals( "service A { main { nullProcess } }", Files.readString( slice, StandardCharsets.UTF_8 ) );
+		assertEquals( FIRST_RUN, Files.getLastModifiedTime( config ) );
+		// The manifest records the new content
+		assertFalse( new ArtifactWriter( outputDirectory ).write( slice, "service A { main { nullProcess } }" ) );
+	}
+
+	@Test
+	void missingArtifactIsWritten() throws Exception {
+		Files.delete( slice );
+		ArtifactWriter writer = new ArtifactWriter( outputDirectory );
+		assertTrue( writer.write( slice, "service A {}" ) );
+		assertEquals( "service A {}", Files.readString( slice, StandardCharsets.UTF_8 ) );
+	}
+
+	@Test
+	void copyKeepsTheBytes() throws Exception {
+		// Not valid UTF-8
+		byte[] latin = "café".getBytes( StandardCharsets.ISO_8859_1 );
+		Path source = Files.write( outputDirectory.resolve( "latin.ol" ), latin );
+		Path copy = outputDirectory.resolve( "a/latin.ol" );
+		ArtifactWriter writer = new ArtifactWriter( outputDirectory );
+		assertTrue( writer.copy( copy, source ) );
+		writer.save();
+		assertArrayEquals( latin, Files.readAllBytes( copy ) );
+		assertFalse( new ArtifactWriter( outputDirectory ).copy( copy, source ) );
+	}
+}
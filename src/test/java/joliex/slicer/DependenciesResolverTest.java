@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2021 Valentino Picotti
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+package joliex.slicer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import jolie.lang.parse.ast.OLSyntaxNode;
+import jolie.lang.parse.ast.Program;
+import jolie.lang.parse.ast.ServiceNode;
+
+/**
+ * The closures computed over bitsets and strongly connected components are the declarations reachable
+ * through the direct dependencies, whichever way these have been collected.
+ */
+class DependenciesResolverTest {
+	@TempDir
+	Path directory;
+
+	@Test
+	void parallelAndSequentialCollectionAgree() throws Exception {
+		Program program = SyntheticProgram.parse( 600, 42 );
+		ProgramView view = new ProgramView( program );
+		int size = program.children().size();
+		DependenciesResolver sequential = new DependenciesResolver( view, size );
+		// Just above the threshold, split into several tasks
+		DependenciesResolver parallel = new DependenciesResolver( view, size - 1 );
+		assertArrayEquals( sequential.edges, parallel.edges );
+		for( OLSyntaxNode n : program.children() ) {
+			if( n instanceof ServiceNode ) {
+				assertEquals( sequential.getServiceDependencyIds( (ServiceNode) n, Collections.emptyMap() ),
+					parallel.getServiceDependencyIds( (ServiceNode) n, Collections.emptyMap() ),
+					((ServiceNode) n).name() );
+			}
+		}
+	}
+
+	@Test
+	void closuresAreTheReachableDeclarations() throws Exception {
+		assertClosuresAreReachable( new DependenciesResolver( SyntheticProgram.parse( 600, 7 ) ) );
+		assertClosuresAreReachable(
+			new DependenciesResolver( parse( SlicingFixture.resource( "cycles/application.ol" ) ) ) );
+	}
+
+	@Test
+	void cyclicDeclarationsDependOnTheirWholeCycle() throws Exception {
+		DependenciesResolver resolver =
+			new DependenciesResolver( parse( SlicingFixture.resource( "cycles/application.ol" ) ) );
+		Map< String, Integer > ids = ids( resolver );
+		int node = ids.get( "type Node" );
+		int edge = ids.get( "type Edge" );
+		int tree = ids.get( "type Tree" );
+		int message = ids.get( "type Message" );
+		assertEquals( resolver.componentOf[ node ], resolver.componentOf[ edge ] );
+		assertNotEquals( resolver.componentOf[ node ], resolver.componentOf[ tree ] );
+		assertEquals( bits( node, edge ), resolver.getDependencyIds( node ) );
+		assertEquals( bits( node, edge ), resolver.getDependencyIds( edge ) );
+		assertEquals( bits( tree ), resolver.getDependencyIds( tree ) );
+		// Acyclic declarations are not part of their own closure
+		assertEquals( bits( tree, ids.get( "type Leaf" ) ), resolver.getDependencyIds( message ) );
+		BitSet walker = resolver.getDependencyIds( ids.get( "service Walker" ) );
+		assertEquals( bits( node, edge, tree, ids.get( "type Leaf" ), message, ids.get( "interface Graph" ),
+			ids.get( "interface Messages" ) ), walker );
+	}
+
+	@Test
+	void longCycleIsOneComponent() throws Exception {
+		// A cycle through thousands of types, which Tarjan's algorithm follows without recursion
+		int length = 5000;
+		StringBuilder source = new StringBuilder();
+		for( int i = 0; i < length; i++ ) {
+			source.append( "type C" ).append( i ).append( ": void {\n  next?: C" ).append( (i + 1) % length )
+				.append( "\n}\n\n" );
+		}
+		Path file = directory.resolve( "cycle.ol" );
+		Files.writeString( file, source, StandardCharsets.UTF_8 );
+		DependenciesResolver resolver = new DependenciesResolver( parse( file ) );
+		BitSet all = new BitSet();
+		all.set( 0, length );
+		for( int i = 0; i < length; i++ ) {
+			assertEquals( resolver.componentOf[ 0 ], resolver.componentOf[ i ] );
+		}
+		assertEquals( all, resolver.getDependencyIds( 0 ) );
+		assertEquals( 1, resolver.componentClosures.size() );
+	}
+
+	private static Program parse( Path program ) throws Exception {
+		return JolieSlicer.parseProgram( List.of( program.toString() ) );
+	}
+
+	/*
+	 * Checks the closure of every declaration against a search of the edges from it: a declaration is in
+	 * its own closure only if it is on a cycle.
+	 */
+	private static void assertClosuresAreReachable( DependenciesResolver resolver ) {
+		for( int id = 0; id < resolver.declarations.size(); id++ ) {
+			BitSet reachable = new BitSet();
+			Deque< Integer > worklist = new ArrayDeque<>();
+			worklist.push( id );
+			while( !worklist.isEmpty() ) {
+				for( int w : resolver.edges[ worklist.pop() ] ) {
+					if( !reachable.get( w ) ) {
+						reachable.set( w );
+						worklist.push( w );
+					}
+				}
+			}
+			assertEquals( reachable, resolver.getDependencyIds( id ),
+				SymbolTable.nameOf( resolver.declarations.get( id ) ) );
+		}
+	}
+
+	private static Map< String, Integer > ids( DependenciesResolver resolver ) {
+		Map< String, Integer > ids = new HashMap<>();
+		for( int id = 0; id < resolver.declarations.size(); id++ ) {
+			ids.put( SymbolTable.nameOf( resolver.declarations.get( id ) ), id );
+		}
+		return ids;
+	}
+
+	private static BitSet bits( int... ids ) {
+		BitSet bits = new BitSet();
+		for( int id : ids ) {
+			bits.set( id );
+		}
+		return bits;
+	}
+}
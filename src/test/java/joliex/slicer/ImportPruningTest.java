@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2021 Valentino Picotti
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+package joliex.slicer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * The imports of each slice keep only the symbols the slice refers to, and the interfaces narrowed by
+ * --narrow-interfaces keep only the invoked operations (see imports/application.ol).
+ */
+class ImportPruningTest {
+	private static final String MODULE = ".lib.types";
+	private static final Set< String > SERVICES = Set.of( "Client", "Provider" );
+
+	@TempDir
+	static Path outputDirectory;
+	private static Map< String, String > slices;
+	private static Map< String, String > narrowedSlices;
+
+	@BeforeAll
+	static void slice() throws Exception {
+		Path program = SlicingFixture.resource( "imports/application.ol" );
+		slices = SlicingFixture.slice( program, SERVICES, false, outputDirectory.resolve( "slices" ) );
+		narrowedSlices = SlicingFixture.slice( program, SERVICES, true, outputDirectory.resolve( "narrowed" ) );
+	}
+
+	@Test
+	void providerImportsTheTypesOfItsInterfaceAndParameter() {
+		// Purchase keeps its alias, Params is used only as the type of the parameter of the service
+		assertEquals( List.of( "Order as Purchase", "Shipping", "Params" ),
+			SlicingFixture.importedSymbols( slices.get( "Provider" ), MODULE ), slices.get( "Provider" ) );
+	}
+
+	@Test
+	void clientImportsLinkedTypesAndEmbeddedServices() {
+		// Item is used only through the link of an inline type, Logger only by the embedding
+		assertEquals( List.of( "Order as Purchase", "Item", "Shipping", "Logger" ),
+			SlicingFixture.importedSymbols( slices.get( "Client" ), MODULE ), slices.get( "Client" ) );
+	}
+
+	@Test
+	void narrowingDropsTheImportsOfDroppedOperations() {
+		String client = narrowedSlices.get( "Client" );
+		// Client invokes only order: ship and its request type leave its slice
+		assertEquals( List.of( "Order as Purchase", "Item", "Logger" ),
+			SlicingFixture.importedSymbols( client, MODULE ), client );
+		assertFalse( client.contains( "ship(" ), client );
+		assertTrue( client.contains( "order(" ), client );
+		// Provider implements Store, which is kept whole
+		assertEquals( SlicingFixture.importedSymbols( slices.get( "Provider" ), MODULE ),
+			SlicingFixture.importedSymbols( narrowedSlices.get( "Provider" ), MODULE ), narrowedSlices.get( "Provider" ) );
+	}
+
+	@Test
+	void prunedSlicesParse() {
+		SlicingFixture.assertSlicesParse( outputDirectory.resolve( "slices" ), SERVICES );
+		SlicingFixture.assertSlicesParse( outputDirectory.resolve( "narrowed" ), SERVICES );
+	}
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2021 Valentino Picotti
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+package joliex.slicer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * The local modules imported by a slice are copied next to it, byte for byte, including the modules found
+ * through the package paths (see modules/app/application.ol); an import that cannot be copied fails the
+ * slicing (see escape/app/application.ol).
+ */
+class LocalModulesTest {
+	@TempDir
+	static Path outputDirectory;
+	private static Path serviceDirectory;
+
+	/* Slices modules/app/application.ol, whose module util is in the package path modules/vendor */
+	@BeforeAll
+	static void slice() throws Exception {
+		Path modules = outputDirectory.resolve( "modules" );
+		SlicingFixture.slice( SlicingFixture.resource( "modules/app/application.ol" ), Set.of( "Annotator" ), false,
+			modules, List.of( SlicingFixture.resource( "modules/vendor" ) ) );
+		serviceDirectory = Slicer.serviceDirectory( modules, "Annotator" );
+	}
+
+	@Test
+	void modulesAreCopiedUnchanged() throws Exception {
+		// latin.ol is encoded in ISO-8859-1
+		assertArrayEquals( Files.readAllBytes( SlicingFixture.resource( "modules/app/lib/latin.ol" ) ),
+			Files.readAllBytes( serviceDirectory.resolve( "lib/latin.ol" ) ) );
+	}
+
+	@Test
+	void modulesOfThePackagePathsAreCopiedUnderPackages() throws Exception {
+		// util is a directory module, which imports helpers.ol next to it
+		try( Stream< Path > files = Files.walk( serviceDirectory.resolve( "packages" ) ) ) {
+			assertEquals( List.of( "util/helpers.ol", "util/main.ol" ), files.filter( Files::isRegularFile )
+				.map( f -> serviceDirectory.resolve( "packages" ).relativize( f ).toString().replace( '\\', '/' ) )
+				.sorted().toList() );
+		}
+	}
+
+	@Test
+	void importOutsideTheProgramDirectoryFails() throws Exception {
+		Path program = SlicingFixture.resource( "escape/app/application.ol" );
+		IOException e = assertThrows( IOException.class,
+			() -> SlicingFixture.slice( program, Set.of( "Receiver" ), false, outputDirectory.resolve( "escape" ) ) );
+		assertTrue( e.getMessage().contains( "cannot be copied into the slices" ), e.getMessage() );
+	}
+}
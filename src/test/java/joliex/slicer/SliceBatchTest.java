@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2021 Valentino Picotti
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+package joliex.slicer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import jolie.lang.parse.ast.Program;
+
+/**
+ * Slicing a program for many targets at once, as sliceBatch does, generates the same slices as slicing
+ * it for each target on its own, although the targets share the parse and the printed declarations.
+ */
+class SliceBatchTest {
+	private static final Set< String > CLIENT = Set.of( "Client" );
+	private static final Set< String > ALL = Set.of( "Client", "Provider" );
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void batchMatchesSingleSlices() throws Exception {
+		Path program = SlicingFixture.resource( "imports/application.ol" );
+		Path clientDirectory = directory.resolve( "batch/client" );
+		Path allDirectory = directory.resolve( "batch/all" );
+		List< String > args = SlicingFixture.parserArguments( program );
+		Program p = JolieSlicer.parseProgram( args );
+		Map< Path, Slicer > slicers = Slicer.create( p, Map.of( clientDirectory, CLIENT, allDirectory, ALL ),
+			new SliceStats(), false, args );
+		for( Slicer slicer : slicers.values() ) {
+			slicer.generateServiceDirectories();
+		}
+
+		assertEquals( SlicingFixture.slice( program, CLIENT, false, directory.resolve( "single/client" ) ),
+			read( clientDirectory, CLIENT ) );
+		assertEquals( SlicingFixture.slice( program, ALL, false, directory.resolve( "single/all" ) ),
+			read( allDirectory, ALL ) );
+	}
+
+	private static Map< String, String > read( Path outputDirectory, Set< String > services ) throws Exception {
+		Map< String, String > slices = new TreeMap<>();
+		for( String service : services ) {
+			slices.put( service,
+				Files.readString( Slicer.serviceFile( outputDirectory, service ), StandardCharsets.UTF_8 ) );
+		}
+		return slices;
+	}
+}
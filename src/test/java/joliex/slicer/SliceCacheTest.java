@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2021 Valentino Picotti
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+package joliex.slicer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import jolie.lang.parse.ast.Program;
+
+/**
+ * A stored entry restores the slices without parsing until a source of the program changes: the program,
+ * the files it includes or the local modules copied next to the slices (see cache/application.ol).
+ */
+class SliceCacheTest {
+	private static final Set< String > SERVICES = Set.of( "Server" );
+
+	@TempDir
+	Path directory;
+	private Path program;
+	private Path outputDirectory;
+	private List< String > args;
+
+	@BeforeEach
+	void sliceAndStore() throws Exception {
+		Path application = directory.resolve( "application" );
+		Files.createDirectories( application.resolve( "lib" ) );
+		for( String file : List.of( "application.ol", "requests.iol", "lib/values.ol" ) ) {
+			Files.copy( SlicingFixture.resource( "cache/" + file ), application.resolve( file ) );
+		}
+		program = application.resolve( "application.ol" );
+		outputDirectory = directory.resolve( "output" );
+		args = SlicingFixture.parserArguments( program );
+		Program p = JolieSlicer.parseProgram( args );
+		Slicer slicer = Slicer.create( p, Map.of( outputDirectory, SERVICES ), new SliceStats(), false, args )
+			.get( outputDirectory );
+		slicer.generateServiceDirectories();
+		cache().store( p, slicer );
+	}
+
+	private SliceCache cache() {
+		return new SliceCache( directory.resolve( "cache" ), program, SERVICES, args, false );
+	}
+
+	@Test
+	void unchangedSourcesHit() throws Exception {
+		Path slice = Slicer.serviceFile( outputDirectory, "Server" );
+		String emitted = Files.readString( slice, StandardCharsets.UTF_8 );
+		// The output is already up to date
+		assertEquals( Optional.of( Set.of() ), cache().restore( outputDirectory ) );
+		Files.delete( slice );
+		SliceCache cache = cache();
+		assertEquals( Optional.of( Set.of( "Server" ) ), cache.restore( outputDirectory ) );
+		assertEquals( emitted, Files.readString( slice, StandardCharsets.UTF_8 ) );
+		assertEquals( Set.of( "lib/values.ol" ), cache.restoredModules().get( "Server" ).keySet() );
+		Path module = Slicer.serviceDirectory( outputDirectory, "Server" ).resolve( "lib/values.ol" );
+		assertTrue( Files.isRegularFile( module ) );
+	}
+
+	@Test
+	void otherServicesMiss() throws Exception {
+		SliceCache other = new SliceCache( directory.resolve( "cache" ), program, Set.of( "Server", "Other" ), args,
+			false );
+		assertEquals( Optional.empty(), other.restore( outputDirectory ) );
+	}
+
+	@Test
+	void changedProgramInvalidates() throws Exception {
+		assertEquals( Optional.empty(), restoreAfterChanging( "application.ol" ) );
+	}
+
+	@Test
+	void changedIncludedFileInvalidates() throws Exception {
+		assertEquals( Optional.empty(), restoreAfterChanging( "requests.iol" ) );
+	}
+
+	@Test
+	void changedModuleInvalidates() throws Exception {
+		assertEquals( Optional.empty(), restoreAfterChanging( "lib/values.ol" ) );
+	}
+
+	private Optional< Set< String > > restoreAfterChanging( String file ) throws Exception {
+		Files.writeString( program.resolveSibling( file ), "\n// changed\n", StandardCharsets.UTF_8,
+			StandardOpenOption.APPEND );
+		return cache().restore( outputDirectory );
+	}
+}
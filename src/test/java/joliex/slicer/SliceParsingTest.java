@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2021 Valentino Picotti
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+package joliex.slicer;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * The slices generated from a program must parse and pass the semantic checks on their own: every
+ * procedure, type and import they use must have been kept.
+ */
+class SliceParsingTest {
+	@TempDir
+	Path outputDirectory;
+
+	@Test
+	void exampleSlicesParse() throws Exception {
+		// The example imports modules of the standard library
+		assumeTrue( System.getenv( "JOLIE_HOME" ) != null, "JOLIE_HOME is not set" );
+		Path example = Paths.get( "example" );
+		Set< String > services = new TreeSet<>();
+		try( Reader reader = Files.newBufferedReader( example.resolve( "configuration.json" ), StandardCharsets.UTF_8 ) ) {
+			((JSONObject) JSONValue.parse( reader )).keySet().forEach( service -> services.add( service.toString() ) );
+		}
+		SlicingFixture.slice( example.resolve( "application.ol" ), services, false, outputDirectory );
+		SlicingFixture.assertSlicesParse( outputDirectory, services );
+	}
+
+	@Test
+	void proceduresCalledFromProceduresAndCouriersAreKept() throws Exception {
+		Set< String > services = Set.of( "Front", "Worker" );
+		Map< String, String > slices = SlicingFixture.slice(
+			SlicingFixture.resource( "procedures/application.ol" ), services, false, outputDirectory );
+		String front = slices.get( "Front" );
+		// audit is called only from the courier, checkAudited only from audit
+		assertTrue( defines( front, "audit" ), front );
+		assertTrue( defines( front, "checkAudited" ), front );
+		assertTrue( defines( front, "answer" ), front );
+		assertTrue( defines( front, "double" ), front );
+		// the type named by instanceof in a live procedure is kept
+		assertTrue( front.contains( "type Audited" ), front );
+		// the procedure that is never called is dropped, with the type only it refers to
+		assertFalse( defines( front, "unused" ), front );
+		assertFalse( front.contains( "type Unused" ), front );
+		assertFalse( slices.get( "Worker" ).contains( "type Audited" ), slices.get( "Worker" ) );
+		SlicingFixture.assertSlicesParse( outputDirectory, services );
+	}
+
+	private static boolean defines( String slice, String procedure ) {
+		return Pattern.compile( "\\bdefine\\s+" + procedure + "\\b" ).matcher( slice ).find();
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2021 Valentino Picotti
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+package joliex.slicer;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import jolie.lang.parse.ast.Program;
+
+/**
+ * Slices test programs and checks that the generated slices are valid Jolie programs.
+ */
+final class SlicingFixture {
+	private SlicingFixture() {}
+
+	/**
+	 * Returns the path of a test resource.
+	 */
+	static Path resource( String name ) throws Exception {
+		return Paths.get( SlicingFixture.class.getResource( "/" + name ).toURI() );
+	}
+
+	/**
+	 * Returns the arguments to parse program with: the package path of the Jolie installation given by
+	 * JOLIE_HOME, if any, followed by the program.
+	 */
+	static List< String > parserArguments( Path program ) {
+		return parserArguments( program, List.of() );
+	}
+
+	/**
+	 * As {@link #parserArguments(Path)}, with the given package paths before that of the Jolie installation.
+	 */
+	static List< String > parserArguments( Path program, List< Path > packagePaths ) {
+		List< String > args = new ArrayList<>();
+		for( Path packagePath : packagePaths ) {
+			args.add( "-p" );
+			args.add( packagePath.toString() );
+		}
+		String jolieHome = System.getenv( "JOLIE_HOME" );
+		if( jolieHome != null ) {
+			args.add( "-p" );
+			args.add( Paths.get( jolieHome, "packages" ).toString() );
+		}
+		args.add( program.toString() );
+		return args;
+	}
+
+	/**
+	 * Slices the services of program into outputDirectory and returns the text of each slice, by service.
+	 */
+	static SortedMap< String, String > slice( Path program, Set< String > services, boolean narrowInterfaces,
+		Path outputDirectory ) throws Exception {
+		return slice( program, services, narrowInterfaces, outputDirectory, List.of() );
+	}
+
+	/**
+	 * As {@link #slice(Path, Set, boolean, Path)}, parsing program with the given package paths.
+	 */
+	static SortedMap< String, String > slice( Path program, Set< String > services, boolean narrowInterfaces,
+		Path outputDirectory, List< Path > packagePaths ) throws Exception {
+		List< String > args = parserArguments( program, packagePaths );
+		Program p = JolieSlicer.parseProgram( args );
+		Slicer slicer = Slicer.create( p, Map.of( outputDirectory, services ), new SliceStats(), narrowInterfaces,
+			args ).get( outputDirectory );
+		slicer.generateServiceDirectories();
+		SortedMap< String, String > slices = new TreeMap<>();
+		for( String service : services ) {
+			slices.put( service,
+				Files.readString( Slicer.serviceFile( outputDirectory, service ), StandardCharsets.UTF_8 ) );
+		}
+		return slices;
+	}
+
+	/**
+	 * Asserts that the slice of each service in outputDirectory parses and passes the semantic checks.
+	 */
+	static void assertSlicesParse( Path outputDirectory, Set< String > services ) {
+		for( String service : services ) {
+			Path slice = Slicer.serviceFile( outputDirectory, service );
+			assertDoesNotThrow( () -> JolieSlicer.parseProgram( parserArguments( slice ) ),
+				() -> "The slice of " + service + " does not parse" );
+		}
+	}
+
+	/**
+	 * Returns the symbols of the import statement of the slice whose target is the given module, or an
+	 * empty list if the slice does not import it.
+	 */
+	static List< String > importedSymbols( String slice, String module ) {
+		String prefix = "from " + module + " import ";
+		for( String line : slice.split( "\\R" ) ) {
+			String trimmed = line.strip();
+			if( trimmed.startsWith( prefix ) ) {
+				List< String > symbols = new ArrayList<>();
+				for( String symbol : trimmed.substring( prefix.length() ).split( "," ) ) {
+					symbols.add( symbol.strip() );
+				}
+				return symbols;
+			}
+		}
+		return List.of();
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2021 Valentino Picotti
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+package joliex.slicer;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import jolie.lang.parse.ast.Program;
+
+/**
+ * Generates sliceable monoliths of a given number of top level declarations, for the tests and the
+ * benchmarks. About 60% of the declarations are types, 25% interfaces and 15% services. Types link
+ * earlier types, so that dependency chains get longer as the program grows, interfaces use types as
+ * operation messages and services expose, use and embed each other. The generation is deterministic for
+ * a given seed.
+ */
+final class SyntheticProgram {
+	private SyntheticProgram() {}
+
+	static String source( int declarations, long seed ) {
+		final Random random = new Random( seed );
+		final int services = Math.max( 1, declarations * 15 / 100 );
+		final int interfaces = Math.max( 1, declarations * 25 / 100 );
+		final int types = Math.max( 1, declarations - services - interfaces );
+		final StringBuilder b = new StringBuilder();
+		for( int i = 0; i < types; i++ ) {
+			if( i > 1 && i % 10 == 0 ) {
+				b.append( "type T" ).append( i ).append( ": T" ).append( random.nextInt( i ) )
+					.append( " | T" ).append( random.nextInt( i ) ).append( "\n\n" );
+				continue;
+			}
+			b.append( "type T" ).append( i ).append( ": void {\n" )
+				.append( "  id: int\n" )
+				.append( "  name?: string\n" );
+			if( i > 0 ) {
+				b.append( "  parent?: T" ).append( random.nextInt( i ) ).append( '\n' );
+				b.append( "  children*: T" ).append( random.nextInt( i ) ).append( '\n' );
+			}
+			b.append( "}\n\n" );
+		}
+		for( int i = 0; i < interfaces; i++ ) {
+			b.append( "interface I" ).append( i ).append( " {\n" )
+				.append( "RequestResponse:\n" )
+				.append( "  get" ).append( i ).append( "( T" ).append( random.nextInt( types ) )
+				.append( " )( T" ).append( random.nextInt( types ) ).append( " ),\n" )
+				.append( "  put" ).append( i ).append( "( T" ).append( random.nextInt( types ) )
+				.append( " )( void )\n" )
+				.append( "OneWay:\n" )
+				.append( "  notify" ).append( i ).append( "( T" ).append( random.nextInt( types ) ).append( " )\n" )
+				.append( "}\n\n" );
+		}
+		for( int i = 0; i < services; i++ ) {
+			b.append( "service S" ).append( i ).append( "( config: undefined ) {\n" )
+				.append( "  execution: concurrent\n\n" )
+				.append( "  inputPort Ip {\n" )
+				.append( "    location: \"local://s" ).append( i ).append( "\"\n" )
+				.append( "    interfaces: I" ).append( random.nextInt( interfaces ) ).append( '\n' )
+				.append( "  }\n\n" )
+				.append( "  outputPort Op {\n" )
+				.append( "    interfaces: I" ).append( random.nextInt( interfaces ) ).append( '\n' )
+				.append( "  }\n\n" );
+			if( i > 0 && random.nextBoolean() ) {
+				b.append( "  embed S" ).append( random.nextInt( i ) ).append( "( config ) as Embedded\n\n" );
+			}
+			b.append( "  main {\n" )
+				.append( "    nullProcess\n" )
+				.append( "  }\n" )
+				.append( "}\n\n" );
+		}
+		return b.toString();
+	}
+
+	/**
+	 * Writes the program with the given number of declarations to a temporary file and parses it.
+	 */
+	static Program parse( int declarations, long seed ) throws Exception {
+		Path file = Files.createTempFile( "synthetic" + declarations + "-", ".ol" );
+		try {
+			Files.writeString( file, source( declarations, seed ), StandardCharsets.UTF_8 );
+			return JolieSlicer.parseProgram( List.of( file.toString() ) );
+		} finally {
+			Files.deleteIfExists( file );
+		}
+	}
+}